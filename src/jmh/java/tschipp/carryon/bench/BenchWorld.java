@@ -0,0 +1,113 @@
+package tschipp.carryon.bench;
+
+import net.minecraft.*;
+import tschipp.carryon.interfaces.ICarryOnData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A flat, in-memory server world for the benchmarks to run the world-bound entry points against.
+ *
+ * The server is never started: it only exists because {@link WorldServer} asks it for the view
+ * distance and the scoreboard. Nothing is saved, chunks are generated on first access, and the
+ * world info is marked initialized so no spawn search runs.
+ */
+final class BenchWorld {
+
+    final WorldServer world;
+
+    private BenchWorld(WorldServer world)
+    {
+        this.world = world;
+    }
+
+    static BenchWorld create() throws IOException
+    {
+        File dir = Files.createTempDirectory("carryon-bench").toFile();
+        dir.deleteOnExit();
+
+        DedicatedServer server = new DedicatedServer(dir);
+        server.setConfigurationManager(new ServerConfigurationManager(server) {});
+
+        WorldSettings settings = new WorldSettings(0L, EnumGameType.SURVIVAL, false, false, WorldType.FLAT, false);
+        WorldInfo info = new WorldInfo(settings, "bench");
+        info.setServerInitialized(true);
+
+        ISaveHandler saves = new SaveHandlerMP() {
+            @Override
+            public WorldInfo loadWorldInfo()
+            {
+                return info;
+            }
+        };
+
+        return new BenchWorld(new WorldServer(server, saves, "bench", 0, settings, new Profiler(), server.getLogAgent()));
+    }
+
+    /** Places a block and reads the given tile data into the tile entity it creates. */
+    TileEntity place(int x, int y, int z, Block block, int meta, NBTTagCompound tileData)
+    {
+        world.setBlock(x, y, z, block.blockID, meta, 2);
+
+        TileEntity tile = world.getBlockTileEntity(x, y, z);
+        NBTTagCompound nbt = (NBTTagCompound) tileData.copy();
+
+        nbt.setInteger("x", x);
+        nbt.setInteger("y", y);
+        nbt.setInteger("z", z);
+        tile.readFromNBT(nbt);
+
+        return tile;
+    }
+
+    /** A carrier with the vault storage the player mixin would otherwise add. */
+    Carrier carrier()
+    {
+        return new Carrier(world);
+    }
+
+    static final class Carrier extends EntityPlayer implements ICarryOnData {
+
+        private NBTTagCompound data = new NBTTagCompound();
+
+        Carrier(World world)
+        {
+            super(world, "Bench");
+        }
+
+        @Override
+        public NBTTagCompound carryOn$getCarryOnData()
+        {
+            return data;
+        }
+
+        @Override
+        public void carryOn$setCarryOnData(NBTTagCompound tag)
+        {
+            data = tag;
+        }
+
+        @Override
+        public void sendChatToPlayer(ChatMessageComponent message) {}
+
+        @Override
+        public boolean canCommandSenderUseCommand(int level, String command)
+        {
+            return false;
+        }
+
+        @Override
+        public ChunkCoordinates getPlayerCoordinates()
+        {
+            return new ChunkCoordinates(MathHelper.floor_double(posX), MathHelper.floor_double(posY), MathHelper.floor_double(posZ));
+        }
+
+        @Override
+        public INetworkManager getNetManager()
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package tschipp.carryon.bench;
+
+import net.minecraft.*;
+import org.openjdk.jmh.annotations.*;
+import tschipp.carryon.CarryOnData;
+import tschipp.carryon.PayloadVault;
+import tschipp.carryon.PayloadWeight;
+import tschipp.carryon.PickupHandler;
+import tschipp.carryon.items.ItemEntity;
+import tschipp.carryon.items.ItemTile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the carry hot paths, run with {@code gradlew jmh}.
+ *
+ * Payloads come from the corpus under {@code src/jmh/resources/corpus}: a full chest of
+ * plain stacks, and a chest and a strongbox half filled with enchanted, named gear.
+ *
+ * The world-bound entry points run against a {@link BenchWorld}: a flat, never-started
+ * server world with a chest holding the payload and a pig to carry. Mixins are not applied, so the carrier
+ * is a fixture player that brings its own vault storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarryBenchmarks {
+
+    @Param({"full_chest", "strongbox", "gear_chest"})
+    public String payload;
+
+    private static final int X = 8, Y = 64, Z = 8;
+
+    private BenchWorld fixture;
+    private EntityPlayer carrier;
+    private NBTTagCompound tile;
+    private TileEntity chest;
+    private ItemStack stored;
+    private ItemStack storedEntity;
+    private ItemStack carried;
+    private ItemStack legacy;
+    private Block[] blocks;
+    private Entity[] entities;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        fixture = BenchWorld.create();
+        carrier = fixture.carrier();
+
+        World world = fixture.world;
+
+        tile = load(payload);
+        chest = fixture.place(X, Y, Z, Block.chest, 2, tile);
+
+        stored = new ItemStack(Block.stone);
+        ItemTile.storeTileData(chest, world, X, Y, Z, stored, carrier);
+
+        EntityPig pig = new EntityPig(world);
+        pig.setPosition(X + 2.5, Y, Z + 0.5);
+        pig.setCustomNameTag("Bench");
+
+        storedEntity = new ItemStack(Block.stone);
+        ItemEntity.storeEntityData(pig, world, storedEntity, carrier);
+
+        carried = new ItemStack(Block.stone);
+        carried.stackTagCompound = new NBTTagCompound();
+        PayloadWeight.store(carried.stackTagCompound, PayloadWeight.measure(tile));
+
+        legacy = new ItemStack(Block.stone);
+        legacy.stackTagCompound = new NBTTagCompound();
+        legacy.stackTagCompound.setCompoundTag(ItemTile.TILE_DATA_KEY, tile);
+
+        List<Block> registered = new ArrayList<>();
+
+        for (Block block : Block.blocksList) if (block != null) registered.add(block);
+
+        blocks = registered.toArray(new Block[0]);
+
+        entities = new Entity[] {
+                new EntityPig(world), new EntityCow(world), new EntitySheep(world),
+                new EntityChicken(world), new EntityZombie(world), new EntitySkeleton(world)
+        };
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        PayloadVault.clear();
+    }
+
+    @Benchmark
+    public int isFunctionalBlock()
+    {
+        int n = 0;
+
+        for (Block block : blocks) if (PickupHandler.isFunctionalBlock(block)) n++;
+
+        return n;
+    }
+
+    @Benchmark
+    public int canPlayerPickUpEntity()
+    {
+        int n = 0;
+
+        for (Entity entity : entities) if (PickupHandler.canPlayerPickUpEntity(null, entity)) n++;
+
+        return n;
+    }
+
+    /** A pickup of the chest into a fresh stack; the deposited payload is discarded again so the vault stays the same size. */
+    @Benchmark
+    public long storeTileData()
+    {
+        ItemStack stack = new ItemStack(Block.stone);
+
+        ItemTile.storeTileData(chest, fixture.world, X, Y, Z, stack, carrier);
+
+        long token = ItemTile.getToken(stack);
+        PayloadVault.discard(token, carrier);
+
+        return token;
+    }
+
+    @Benchmark
+    public NBTTagCompound getTileData()
+    {
+        return ItemTile.getTileData(stored, carrier);
+    }
+
+    /** A carried pig rebuilt from its vaulted payload, as on placement. */
+    @Benchmark
+    public Entity getEntity()
+    {
+        return ItemEntity.getEntity(storedEntity, fixture.world, carrier);
+    }
+
+    @Benchmark
+    public int potionLevel()
+    {
+        return ItemTile.potionLevel(carried);
+    }
+
+    /** A stack from before sizes were recorded, measured on every call. */
+    @Benchmark
+    public int potionLevelLegacy()
+    {
+        legacy.stackTagCompound.removeTag(CarryOnData.PAYLOAD_SIZE_KEY);
+
+        return ItemTile.potionLevel(legacy);
+    }
+
+    @Benchmark
+    public boolean isLocked()
+    {
+        return ItemTile.isLocked(X, Y, Z, fixture.world);
+    }
+
+    @Benchmark
+    public boolean isLockedCaptured()
+    {
+        return ItemTile.isLocked(tile);
+    }
+
+    private static NBTTagCompound load(String name) throws IOException
+    {
+        try (InputStream in = CarryBenchmarks.class.getResourceAsStream("/corpus/" + name + ".nbt"))
+        {
+            if (in == null) throw new IOException("Missing corpus payload " + name);
+
+            return CompressedStreamTools.readCompressed(in);
+        }
+    }
+}
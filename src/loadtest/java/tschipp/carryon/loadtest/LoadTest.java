@@ -0,0 +1,416 @@
+package tschipp.carryon.loadtest;
+
+import net.minecraft.*;
+import net.minecraft.server.MinecraftServer;
+import tschipp.carryon.CarryOn;
+import tschipp.carryon.CarrySync;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Level;
+
+/**
+ * Headless pickup/place load test, run inside a dedicated server.
+ *
+ * It lives in the {@code loadtest} source set as a separate mod, so it is only loaded by
+ * the {@code runLoadTest} Gradle task; {@link tschipp.carryon.loadtest.mixin.LoadTestServerMixin}
+ * times the ticks.
+ *
+ * Enabled by the {@value #PROPERTY} system property, e.g.
+ * {@code -Dcarryon.loadtest=players=200,ticks=2400,warmup=200,interval=20,pens=50}
+ * (pass it as {@code -PloadTest=...}). On the first server tick it builds a
+ * grid of floating cells next to spawn, each holding a filled chest or a fenced-in
+ * pig, and logs in one fake {@link ServerPlayer} per cell. Fake players have a
+ * network manager that discards everything. Each player then alternates sneak
+ * right-click pickups and placements. These go through
+ * {@link NetServerHandler#handleRightClick} with synthetic {@link Packet81RightClick}s,
+ * every {@code interval} ticks, staggered across players.
+ *
+ * After {@code warmup} ticks it records, for {@code ticks} ticks:
+ * - server tick time (mean and percentiles)
+ * - bytes allocated on the server thread
+ * - successful pickups and placements
+ *
+ * The results are logged and written to {@value #RESULTS}, then the server shuts down.
+ */
+public final class LoadTest
+{
+    public static final String PROPERTY = "carryon.loadtest";
+    public static final String RESULTS = "carryon-loadtest.json";
+
+    private static final int CELL_X = 5;
+    private static final int CELL_Z = 6;
+
+    private static LoadTest active;
+    private static boolean checked;
+
+    private final int players;
+    private final int ticks;
+    private final int warmup;
+    private final int interval;
+    private final int pens;
+
+    private final Random random = new Random(0);
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Bot[] bots;
+    private long[] tickNanos;
+    private int tick;
+    private long tickStart;
+    private long allocStart;
+    private long allocated;
+    private long wallStart;
+    private int pickups;
+    private int places;
+    private int failed;
+
+    private LoadTest(int players, int ticks, int warmup, int interval, int pens)
+    {
+        this.players = players;
+        this.ticks = ticks;
+        this.warmup = warmup;
+        this.interval = interval;
+        this.pens = pens;
+        this.tickNanos = new long[ticks];
+    }
+
+    public static void onTickStart(MinecraftServer server)
+    {
+        if (!checked)
+        {
+            checked = true;
+            active = parse(System.getProperty(PROPERTY));
+
+            if (active != null) active.setup(server);
+        }
+
+        if (active != null) active.beginTick();
+    }
+
+    public static void onTickEnd(MinecraftServer server)
+    {
+        if (active != null && active.endTick()) active.finish(server);
+    }
+
+    private static LoadTest parse(String spec)
+    {
+        if (spec == null) return null;
+
+        int players = 100, ticks = 2400, warmup = 200, interval = 20, pens = 50;
+
+        for (String part : spec.split(","))
+        {
+            String[] kv = part.split("=", 2);
+
+            if (kv.length != 2) continue;
+
+            try
+            {
+                int value = Integer.parseInt(kv[1].trim());
+
+                switch (kv[0].trim())
+                {
+                    case "players" -> players = Math.max(1, value);
+                    case "ticks" -> ticks = Math.max(1, value);
+                    case "warmup" -> warmup = Math.max(0, value);
+                    case "interval" -> interval = Math.max(1, value);
+                    case "pens" -> pens = Math.max(0, Math.min(100, value));
+                    default -> CarryOn.LOGGER.warning("Unknown load test option " + kv[0]);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                CarryOn.LOGGER.warning("Invalid load test value for " + kv[0] + ": " + kv[1]);
+            }
+        }
+
+        return new LoadTest(players, ticks, warmup, interval, pens);
+    }
+
+    private void setup(MinecraftServer server)
+    {
+        WorldServer world = server.worldServerForDimension(0);
+        ChunkCoordinates spawn = world.getSpawnPoint();
+
+        int y0 = world.getTopSolidOrLiquidBlock(spawn.posX, spawn.posZ) + 8;
+        int columns = (int) Math.ceil(Math.sqrt(players));
+
+        bots = new Bot[players];
+
+        for (int i = 0; i < players; i++)
+        {
+            int cx = spawn.posX + (i % columns) * CELL_X;
+            int cz = spawn.posZ + (i / columns) * CELL_Z;
+            boolean pen = i * 100 < pens * players;
+
+            bots[i] = new Bot(cx, y0, cz, pen);
+            buildCell(world, bots[i]);
+            bots[i].player = login(server, world, "loadtest" + i, bots[i]);
+        }
+
+        CarryOn.LOGGER.info(String.format(Locale.ROOT, "Load test: %d players (%d pens), %d ticks after %d warmup, acting every %d ticks",
+                players, countPens(), ticks, warmup, interval));
+    }
+
+    /**
+     * Builds one cell: a stone floor, a chest or a three-sided fence pen with a pig two
+     * blocks in front of where the player stands, and nothing between the two.
+     */
+    private void buildCell(WorldServer world, Bot bot)
+    {
+        int x = bot.x, y = bot.y, z = bot.z;
+
+        for (int dx = -2; dx <= 2; dx++)
+            for (int dz = -1; dz <= 4; dz++)
+            {
+                world.setBlock(x + dx, y - 1, z + dz, Block.stone.blockID, 0, 2);
+
+                for (int dy = 0; dy < 3; dy++) world.setBlockToAir(x + dx, y + dy, z + dz);
+            }
+
+        if (bot.pen)
+        {
+            for (int dz = 1; dz <= 3; dz++)
+            {
+                world.setBlock(x - 1, y, z + dz, Block.fence.blockID, 0, 2);
+                world.setBlock(x + 1, y, z + dz, Block.fence.blockID, 0, 2);
+            }
+
+            world.setBlock(x, y, z + 3, Block.fence.blockID, 0, 2);
+
+            EntityPig pig = new EntityPig(world);
+            pig.setLocationAndAngles(x + 0.5, y, z + 2.5, 0.0f, 0.0f);
+            world.spawnEntityInWorld(pig);
+            bot.entityId = pig.entityId;
+        }
+        else
+        {
+            world.setBlock(x, y, z + 2, Block.chest.blockID, 2, 2);
+
+            if (world.getBlockTileEntity(x, y, z + 2) instanceof IInventory inventory) fill(inventory);
+        }
+    }
+
+    private void fill(IInventory inventory)
+    {
+        for (int slot = 0; slot < inventory.getSizeInventory(); slot++)
+        {
+            Item item;
+
+            do
+            {
+                item = Item.itemsList[random.nextInt(Item.itemsList.length)];
+            }
+            while (item == null);
+
+            int count = Math.max(1, Math.min(1 + random.nextInt(64), item.getItemStackLimit(0, 0)));
+
+            inventory.setInventorySlotContents(slot, new ItemStack(item, count));
+        }
+    }
+
+    private ServerPlayer login(MinecraftServer server, WorldServer world, String name, Bot bot)
+    {
+        ServerPlayer player = new ServerPlayer(server, world, name, new ItemInWorldManager(world));
+
+        new NetServerHandler(server, new NullNetworkManager(), player);
+
+        // Looking straight ahead and down at the top of the floor block two cells away
+        float pitch = (float) Math.toDegrees(Math.atan2(player.getEyeHeight(), 2.0));
+
+        player.setLocationAndAngles(bot.x + 0.5, bot.y, bot.z + 0.5, 0.0f, pitch);
+        server.getConfigurationManager().playerLoggedIn(player);
+
+        return player;
+    }
+
+    private void beginTick()
+    {
+        if (tick == warmup) wallStart = System.nanoTime();
+
+        tickStart = System.nanoTime();
+        allocStart = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        for (int i = 0; i < bots.length; i++)
+        {
+            Bot bot = bots[i];
+
+            // Stands in for the movement packets a real client would send every tick
+            bot.player.onUpdateEntity();
+
+            if ((tick + i) % interval == 0) act(bot);
+        }
+    }
+
+    /** Returns true once the measurement window is over. */
+    private boolean endTick()
+    {
+        long elapsed = System.nanoTime() - tickStart;
+        long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocStart;
+
+        if (tick >= warmup)
+        {
+            tickNanos[tick - warmup] = elapsed;
+            allocated += bytes;
+        }
+
+        return ++tick == warmup + ticks;
+    }
+
+    private void act(Bot bot)
+    {
+        ServerPlayer player = bot.player;
+        boolean carrying = CarrySync.isCarryStack(player.getHeldItemStack());
+        boolean measured = tick >= warmup;
+
+        Packet81RightClick packet = new Packet81RightClick();
+        packet.slot_index = player.inventory.currentItem;
+        packet.item_id = player.getHeldItemID();
+
+        if (carrying)
+        {
+            player.setSneaking(false);
+            aim(packet, player);
+            packet.filter = new RightClickFilter(RightClickFilter.ON_ITEM_RIGHT_CLICK);
+        }
+        else if (bot.pen)
+        {
+            player.setSneaking(true);
+            packet.entity_id = bot.entityId;
+            packet.filter = new RightClickFilter().setExclusive(RightClickFilter.ENTITY_INTERACTION);
+        }
+        else
+        {
+            player.setSneaking(true);
+            aim(packet, player);
+            packet.filter = new RightClickFilter();
+        }
+
+        player.playerNetServerHandler.handleRightClick(packet);
+
+        boolean nowCarrying = CarrySync.isCarryStack(player.getHeldItemStack());
+
+        if (carrying && !nowCarrying)
+        {
+            if (measured) places++;
+
+            if (bot.pen) bot.entityId = findAnimal(player.worldObj, bot);
+        }
+        else if (!carrying && nowCarrying)
+        {
+            if (measured) pickups++;
+        }
+        else if (measured)
+        {
+            failed++;
+        }
+    }
+
+    private static void aim(Packet81RightClick packet, ServerPlayer player)
+    {
+        packet.pos_x = packet.prev_pos_x = player.posX;
+        packet.pos_y = packet.prev_pos_y = player.posY;
+        packet.pos_z = packet.prev_pos_z = player.posZ;
+        packet.rotation_yaw = packet.prev_rotation_yaw = player.rotationYaw;
+        packet.rotation_pitch = packet.prev_rotation_pitch = player.rotationPitch;
+        packet.y_size = player.ySize;
+        packet.bb = player.boundingBox.copy();
+        packet.partial_tick = 1.0f;
+    }
+
+    private static int findAnimal(World world, Bot bot)
+    {
+        AxisAlignedBB area = AxisAlignedBB.getBoundingBox(bot.x - 2, bot.y - 1, bot.z - 1, bot.x + 3, bot.y + 3, bot.z + 5);
+        List<?> found = world.getEntitiesWithinAABB(EntityAnimal.class, area);
+
+        return found.isEmpty() ? 0 : ((Entity) found.get(0)).entityId;
+    }
+
+    private int countPens()
+    {
+        int n = 0;
+
+        for (Bot bot : bots) if (bot.pen) n++;
+
+        return n;
+    }
+
+    private void finish(MinecraftServer server)
+    {
+        active = null;
+
+        double seconds = (System.nanoTime() - wallStart) / 1.0e9;
+        long[] sorted = tickNanos.clone();
+        Arrays.sort(sorted);
+
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1.0e6;
+
+        String json = String.format(Locale.ROOT,
+                "{\"players\":%d,\"pens\":%d,\"ticks\":%d,\"interval\":%d,\"seconds\":%.3f,"
+                        + "\"tickMs\":{\"mean\":%.3f,\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f},"
+                        + "\"allocatedMBPerSecond\":%.3f,\"allocatedBytesPerTick\":%d,"
+                        + "\"pickups\":%d,\"places\":%d,\"failed\":%d,\"pickupsPerSecond\":%.2f,\"placesPerSecond\":%.2f}",
+                players, countPens(), ticks, interval, seconds,
+                mean, percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1.0e6,
+                allocated / 1048576.0 / seconds, allocated / ticks,
+                pickups, places, failed, pickups / seconds, places / seconds);
+
+        CarryOn.LOGGER.info("Load test results: " + json);
+
+        try (Writer out = new FileWriter(new File(RESULTS)))
+        {
+            out.write(json);
+            out.write('\n');
+        }
+        catch (IOException e)
+        {
+            CarryOn.LOGGER.log(Level.WARNING, "Failed to write " + RESULTS, e);
+        }
+
+        server.initiateShutdown();
+    }
+
+    private static double percentile(long[] sorted, double p)
+    {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1.0e6;
+    }
+
+    private static final class Bot
+    {
+        final int x, y, z;
+        final boolean pen;
+        ServerPlayer player;
+        int entityId;
+
+        Bot(int x, int y, int z, boolean pen)
+        {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.pen = pen;
+        }
+    }
+
+    /** Network manager for fake players: accepts and drops every packet. */
+    private static final class NullNetworkManager implements INetworkManager
+    {
+        @Override public void setNetHandler(NetHandler handler) {}
+        @Override public void addToSendQueue(Packet packet) {}
+        @Override public void wakeThreads() {}
+        @Override public void processReadPackets() {}
+        @Override public int clearReceivedPackets() { return 0; }
+        @Override public SocketAddress getSocketAddress() { return null; }
+        @Override public void serverShutdown() {}
+        @Override public int packetSize() { return 0; }
+        @Override public void networkShutdown(String reason, Object... args) {}
+        @Override public void closeConnections() {}
+    }
+}
@@ -0,0 +1,27 @@
+package tschipp.carryon.loadtest.mixin;
+
+import net.minecraft.server.MinecraftServer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.loadtest.LoadTest;
+
+/**
+ * Times server ticks for the load test. Only on the classpath of the {@code loadTest} run.
+ */
+@Mixin(MinecraftServer.class)
+public abstract class LoadTestServerMixin {
+
+    @Inject(method = "tick", at = @At("HEAD"))
+    private void carryonLoadTest$onTickStart(CallbackInfo info)
+    {
+        LoadTest.onTickStart((MinecraftServer)(Object) this);
+    }
+
+    @Inject(method = "tick", at = @At("RETURN"))
+    private void carryonLoadTest$onTickEnd(CallbackInfo info)
+    {
+        LoadTest.onTickEnd((MinecraftServer)(Object) this);
+    }
+}
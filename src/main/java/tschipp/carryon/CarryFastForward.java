@@ -0,0 +1,169 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import tschipp.carryon.mixin.BrewingStandAccessor;
+import tschipp.carryon.mixin.FurnaceAccessor;
+
+/**
+ * Catches carried furnaces, brewing stands and animals up on the time they spent in a
+ * player's hands.
+ *
+ * Nothing ticks while something is carried. Instead, the overworld clock is written into the
+ * payload at pickup, and on placement the elapsed ticks are applied in one go.
+ *
+ * For tile entities, spans in
+ * which only counters move (fuel burning down, an item or brew part way done) are skipped
+ * by arithmetic. Only the ticks where something happens run the tile entity's own
+ * {@code updateEntity}: a fuel item lighting, an item smelting, a brew finishing, the
+ * furnace going out. The cost is bounded by the contents, not by the time carried.
+ *
+ * For animals, only timers that run regardless of surroundings are advanced, directly in
+ * the saved NBT: growing age and breeding cooldown, and how long they stay in love. Needs
+ * such as food and water depend on where the animal is and are left as they were.
+ */
+public final class CarryFastForward
+{
+    public static final String PICKED_UP_KEY = "CarryOnPickedUp";
+
+    /** Upper bound on full ticks per placement, far above what a full furnace needs. */
+    private static final int MAX_EVENT_TICKS = 4096;
+
+    private CarryFastForward() {}
+
+    public static boolean isSupported(TileEntity tile)
+    {
+        return tile instanceof TileEntityFurnace || tile instanceof TileEntityBrewingStand;
+    }
+
+    /** Records the pickup time in a captured payload. */
+    public static void stamp(TileEntity tile, NBTTagCompound tileNbt, World world)
+    {
+        if (isSupported(tile)) tileNbt.setLong(PICKED_UP_KEY, clock(world));
+    }
+
+    /** Records the pickup time in a captured entity. */
+    public static void stamp(Entity entity, NBTTagCompound entityNbt, World world)
+    {
+        if (entity instanceof EntityAgeable) entityNbt.setLong(PICKED_UP_KEY, clock(world));
+    }
+
+    /**
+     * Returns the entity data to read into a freshly created entity, with its timers advanced
+     * by the time it was carried. The stored payload is left as it is, so a placement that
+     * fails does not advance it twice.
+     */
+    public static NBTTagCompound apply(Entity entity, NBTTagCompound entityNbt, World world)
+    {
+        if (world.isRemote || !entityNbt.hasKey(PICKED_UP_KEY)) return entityNbt;
+
+        long elapsed = clock(world) - entityNbt.getLong(PICKED_UP_KEY);
+        NBTTagCompound data = (NBTTagCompound) entityNbt.copy();
+
+        data.removeTag(PICKED_UP_KEY);
+
+        if (elapsed <= 0) return data;
+
+        int age = data.getInteger("Age");
+
+        if (age < 0)
+        {
+            // Horses grow in steps of 200 every 200 ticks, everything else by one per tick
+            long growth = entity instanceof EntityHorse ? elapsed / 200 * 200 : elapsed;
+            age = (int) Math.min(age + growth, 0);
+        }
+        else if (age > 0)
+        {
+            age = (int) Math.max(age - elapsed, 0);
+        }
+
+        data.setInteger("Age", age);
+
+        if (data.hasKey("InLove"))
+            data.setInteger("InLove", age != 0 ? 0 : (int) Math.max(data.getInteger("InLove") - elapsed, 0));
+
+        return data;
+    }
+
+    /** Advances a placed tile entity that has just read its payload by the time it was carried. */
+    public static void apply(TileEntity tile, NBTTagCompound tileNbt, World world)
+    {
+        if (world.isRemote || !tileNbt.hasKey(PICKED_UP_KEY)) return;
+
+        long elapsed = clock(world) - tileNbt.getLong(PICKED_UP_KEY);
+
+        if (elapsed <= 0) return;
+
+        if (tile instanceof TileEntityFurnace furnace) furnace(furnace, elapsed);
+        else if (tile instanceof TileEntityBrewingStand stand) brewingStand(stand, elapsed);
+    }
+
+    private static void furnace(TileEntityFurnace furnace, long ticks)
+    {
+        // A flooded or smothered furnace goes out on its first tick anyway
+        if (furnace.isFlooded() || furnace.isSmotheredBySolidBlock()) return;
+
+        FurnaceAccessor access = (FurnaceAccessor) furnace;
+
+        for (int events = 0; ticks > 0 && events < MAX_EVENT_TICKS; )
+        {
+            int burn = furnace.furnaceBurnTime;
+
+            if (burn == 0 && !access.carryon$canSmelt(furnace.getFuelHeatLevel()))
+            {
+                // Out of fuel or out of work: nothing changes from here on
+                furnace.heat_level = 0;
+                furnace.furnaceCookTime = 0;
+                return;
+            }
+
+            if (burn > 1)
+            {
+                boolean cooking = access.carryon$canSmelt(furnace.heat_level);
+                long skip = Math.min(ticks, cooking ? Math.min(burn - 1, 199 - furnace.furnaceCookTime) : burn - 1);
+
+                if (skip > 0)
+                {
+                    furnace.furnaceBurnTime -= (int) skip;
+                    furnace.furnaceCookTime = cooking ? furnace.furnaceCookTime + (int) skip : 0;
+                    ticks -= skip;
+                    continue;
+                }
+            }
+
+            furnace.updateEntity();
+            ticks--;
+            events++;
+        }
+    }
+
+    private static void brewingStand(TileEntityBrewingStand stand, long ticks)
+    {
+        BrewingStandAccessor access = (BrewingStandAccessor) stand;
+
+        for (int events = 0; ticks > 0 && events < MAX_EVENT_TICKS; )
+        {
+            int brew = stand.getBrewTime();
+
+            if (brew == 0 && !access.carryon$canBrew()) return;
+
+            if (brew > 1 && access.carryon$canBrew())
+            {
+                long skip = Math.min(ticks, brew - 1);
+
+                access.carryon$setBrewTime(brew - (int) skip);
+                ticks -= skip;
+                continue;
+            }
+
+            stand.updateEntity();
+            ticks--;
+            events++;
+        }
+    }
+
+    /** The overworld's total time, which keeps running whichever dimension the carrier is in. */
+    private static long clock(World world)
+    {
+        return world.getWorldInfo().getWorldTotalTime(0);
+    }
+}
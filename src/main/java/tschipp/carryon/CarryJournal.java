@@ -0,0 +1,541 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import net.minecraft.server.MinecraftServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of carry transactions, kept in {@code data/carryon_journal.dat}
+ * of the overworld save.
+ *
+ * Between a pickup and the carrier's next save, the payload only exists in memory. Each
+ * pickup is therefore journaled with its position and encoded payload, and settled again
+ * when it is placed ({@link PayloadVault#discard}) or when the carrier is saved, since the
+ * payload is in its {@code .dat} from then on. On the first tick after startup, pickups
+ * that were never settled are handed to {@link CarryRestore} at the position they were
+ * taken from. They are first written to a fresh journal as restores, which is forced to
+ * disk and moved over the old one, and stay journaled until the world has been saved with them.
+ *
+ * The server thread only serializes records. At the end of each tick the batch goes to a
+ * single writer thread, which appends it to a memory-mapped file and forces it to disk
+ * once. When the file grows past {@link #COMPACT_BYTES}, the writer rewrites it with
+ * only the unsettled pickups.
+ *
+ * <pre>
+ * record:  length(int) crc32(int) type(byte) body
+ * PICKUP:  token(long) player(UTF) dimension(int) x(int) y(int) z(int) payloadLength(int) payload
+ * SETTLE:  token(long)
+ * SAVED:   player(UTF)
+ * RESTORE: token(long) dimension(int) x(int) y(int) z(int) payloadLength(int) payload
+ * </pre>
+ * A RESTORE replaces the pickup with the same token. It belongs to no player any more, so
+ * only a SETTLE closes it, written once the world it was put back into has been saved.
+ * A length of 0 marks the end of the written part of the mapping.
+ */
+public final class CarryJournal
+{
+    private static final byte PICKUP = 1;
+    private static final byte SETTLE = 2;
+    private static final byte SAVED = 3;
+    private static final byte RESTORE = 4;
+
+    private static final int MAP_CHUNK = 1 << 20;
+    private static final long COMPACT_BYTES = 16L << 20;
+
+    private static List<byte[]> batch = new ArrayList<>();
+    private static ExecutorService writer;
+    private static Writer state;
+
+    /** Tokens put back into the world since the last world save. */
+    private static List<Long> unsaved = new ArrayList<>();
+
+    private CarryJournal() {}
+
+    /** Replays the journal left by the previous run and starts a new one. Called on the first server tick. */
+    public static void open(MinecraftServer server)
+    {
+        if (state != null || !CarryOnConfig.journalEnabled) return;
+
+        WorldServer overworld = server.worldServerForDimension(0);
+
+        if (overworld == null) return;
+
+        File file = overworld.getSaveHandler().getMapFileFromName("carryon_journal");
+        Map<Long, Pickup> open = new LinkedHashMap<>();
+
+        if (file.exists())
+        {
+            try
+            {
+                read(file, open);
+            }
+            catch (IOException e)
+            {
+                CarryOn.LOGGER.log(Level.WARNING, "Failed to read carry journal " + file, e);
+            }
+        }
+
+        Map<Long, Pickup> replay = new LinkedHashMap<>();
+        List<byte[]> records = new ArrayList<>();
+
+        for (Map.Entry<Long, Pickup> entry : open.entrySet())
+        {
+            Pickup pickup = entry.getValue();
+
+            if (server.worldServerForDimension(pickup.dimension) == null || PayloadCodec.kind(pickup.payload) == 0)
+            {
+                CarryOn.LOGGER.warning("Dropping unreadable journaled carry of " + pickup.owner());
+                continue;
+            }
+
+            replay.put(entry.getKey(), pickup);
+            records.add(restoreRecord(entry.getKey(), pickup.dimension, pickup.x, pickup.y, pickup.z, pickup.payload));
+        }
+
+        // The new journal starts out with them as restores and is on disk before the old one goes
+        try
+        {
+            state = new Writer(file, records);
+        }
+        catch (IOException e)
+        {
+            CarryOn.LOGGER.log(Level.WARNING, "Failed to open carry journal " + file, e);
+            return;
+        }
+
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "CarryOn journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (Map.Entry<Long, Pickup> entry : replay.entrySet())
+        {
+            Pickup pickup = entry.getValue();
+
+            CarryRestore.enqueue(server.worldServerForDimension(pickup.dimension), pickup.x, pickup.y, pickup.z, entry.getKey(),
+                    pickup.payload, pickup.owner());
+        }
+    }
+
+    /** Journals a pickup whose payload was just deposited under {@code token}. */
+    public static void pickup(EntityPlayer carrier, long token, World world, int x, int y, int z)
+    {
+        if (state == null) return;
+
+        byte[] payload = PayloadVault.encoded(token, carrier);
+
+        if (payload == null) return;
+
+        batch.add(record(PICKUP, out -> {
+            out.writeLong(token);
+            out.writeUTF(carrier.getCommandSenderName());
+            out.writeInt(world.provider.dimensionId);
+            out.writeInt(x);
+            out.writeInt(y);
+            out.writeInt(z);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }));
+    }
+
+    /** Journals a payload queued by {@link CarryRestore}, replacing the pickup it came from. */
+    public static void restore(long token, World world, int x, int y, int z, byte[] payload)
+    {
+        if (state != null) batch.add(restoreRecord(token, world.provider.dimensionId, x, y, z, payload));
+    }
+
+    /** Settles a restored payload once the world it went into has been saved. */
+    public static void restored(long token)
+    {
+        if (state != null) unsaved.add(token);
+    }
+
+    /** Settles everything restored before a world save. Called after each save of all worlds. */
+    public static void worldsSaved()
+    {
+        if (state == null || unsaved.isEmpty()) return;
+
+        for (long token : unsaved) settle(token);
+
+        unsaved = new ArrayList<>();
+    }
+
+    /** Journals that a payload went back into the world. */
+    public static void settle(long token)
+    {
+        if (state != null) batch.add(record(SETTLE, out -> out.writeLong(token)));
+    }
+
+    /** Journals that a player was written out with everything it carries. */
+    public static void saved(EntityPlayer player)
+    {
+        if (state != null) batch.add(record(SAVED, out -> out.writeUTF(player.getCommandSenderName())));
+    }
+
+    /** Hands this tick's records to the writer thread. */
+    public static void commit()
+    {
+        if (state == null || batch.isEmpty()) return;
+
+        List<byte[]> records = batch;
+        Writer target = state;
+
+        batch = new ArrayList<>();
+        writer.execute(() -> target.append(records));
+    }
+
+    /** Flushes what is left and stops the writer; the file stays for the next startup to settle. */
+    public static void close()
+    {
+        if (state == null) return;
+
+        commit();
+
+        Writer target = state;
+
+        writer.execute(target::close);
+        writer.shutdown();
+
+        try
+        {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) CarryOn.LOGGER.warning("Timed out flushing the carry journal");
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        state = null;
+        writer = null;
+        batch = new ArrayList<>();
+        unsaved = new ArrayList<>();
+    }
+
+    /** Reads every intact record, leaving the pickups that were never settled in {@code open}. */
+    private static void read(File file, Map<Long, Pickup> open) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        CRC32 crc = new CRC32();
+
+        while (buffer.remaining() >= 8)
+        {
+            int length = buffer.getInt();
+
+            if (length <= 0 || length > buffer.remaining() - 4) break;
+
+            int expected = buffer.getInt();
+            byte[] body = new byte[length];
+            buffer.get(body);
+
+            crc.reset();
+            crc.update(body);
+
+            // A torn write at the end of the last batch
+            if ((int) crc.getValue() != expected) break;
+
+            apply(ByteBuffer.wrap(body), open);
+        }
+    }
+
+    private static void apply(ByteBuffer body, Map<Long, Pickup> open)
+    {
+        switch (body.get())
+        {
+            case PICKUP ->
+            {
+                long token = body.getLong();
+                Pickup pickup = new Pickup(readUTF(body), body.getInt(), body.getInt(), body.getInt(), body.getInt());
+                pickup.payload = new byte[body.getInt()];
+                body.get(pickup.payload);
+                open.put(token, pickup);
+            }
+            case RESTORE ->
+            {
+                long token = body.getLong();
+                Pickup pickup = new Pickup(null, body.getInt(), body.getInt(), body.getInt(), body.getInt());
+                pickup.payload = new byte[body.getInt()];
+                body.get(pickup.payload);
+                open.put(token, pickup);
+            }
+            case SETTLE -> open.remove(body.getLong());
+            case SAVED ->
+            {
+                String player = readUTF(body);
+                open.values().removeIf(pickup -> player.equals(pickup.player));
+            }
+            default -> {}
+        }
+    }
+
+    private static byte[] restoreRecord(long token, int dimension, int x, int y, int z, byte[] payload)
+    {
+        return record(RESTORE, out -> {
+            out.writeLong(token);
+            out.writeInt(dimension);
+            out.writeInt(x);
+            out.writeInt(y);
+            out.writeInt(z);
+            out.writeInt(payload.length);
+            out.write(payload);
+        });
+    }
+
+    private static String readUTF(ByteBuffer body)
+    {
+        byte[] bytes = new byte[body.getShort() & 0xFFFF];
+        body.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] record(byte type, Body body)
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(type);
+            body.write(out);
+
+            byte[] record = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record, 8, record.length - 8);
+
+            ByteBuffer.wrap(record).putInt(record.length - 8).putInt((int) crc.getValue());
+
+            return record;
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Failed to write journal record", e);
+        }
+    }
+
+    private interface Body
+    {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static final class Pickup
+    {
+        /** The carrier, or null once the payload was queued for restoring. */
+        final String player;
+        final int dimension, x, y, z;
+        byte[] payload;
+
+        Pickup(String player, int dimension, int x, int y, int z)
+        {
+            this.player = player;
+            this.dimension = dimension;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        String owner()
+        {
+            return player != null ? player : "a restore";
+        }
+    }
+
+    /** The mapped file; only ever used from the writer thread. */
+    private static final class Writer
+    {
+        private final File file;
+        private final Map<Long, byte[]> open = new LinkedHashMap<>();
+        private final Map<Long, String> owners = new LinkedHashMap<>();
+
+        private FileChannel channel;
+        private MappedByteBuffer map;
+        private long compactAt = COMPACT_BYTES;
+
+        /** Replaces the journal with one holding only {@code records}, once they are on disk. */
+        Writer(File file, List<byte[]> records) throws IOException
+        {
+            this.file = file;
+
+            File dir = file.getParentFile();
+
+            if (dir != null && !dir.exists()) dir.mkdirs();
+
+            for (byte[] record : records) track(record);
+
+            swapIn(records);
+            map();
+        }
+
+        void append(List<byte[]> records)
+        {
+            try
+            {
+                for (byte[] record : records)
+                {
+                    track(record);
+
+                    if (map.remaining() < record.length) grow(record.length);
+
+                    map.put(record);
+                }
+
+                map.force();
+
+                if (map.position() > compactAt) compact();
+            }
+            catch (IOException e)
+            {
+                CarryOn.LOGGER.log(Level.WARNING, "Failed to append to carry journal " + file, e);
+            }
+        }
+
+        void close()
+        {
+            try
+            {
+                map.force();
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                CarryOn.LOGGER.log(Level.WARNING, "Failed to close carry journal " + file, e);
+            }
+        }
+
+        /** Mirrors the open pickups so compaction knows what to keep. */
+        private void track(byte[] record)
+        {
+            ByteBuffer body = ByteBuffer.wrap(record, 8, record.length - 8);
+
+            switch (body.get())
+            {
+                case PICKUP ->
+                {
+                    long token = body.getLong();
+                    open.put(token, record);
+                    owners.put(token, readUTF(body));
+                }
+                case RESTORE ->
+                {
+                    long token = body.getLong();
+                    open.put(token, record);
+                    owners.remove(token);
+                }
+                case SETTLE ->
+                {
+                    long token = body.getLong();
+                    open.remove(token);
+                    owners.remove(token);
+                }
+                case SAVED ->
+                {
+                    String player = readUTF(body);
+
+                    for (Iterator<Map.Entry<Long, String>> it = owners.entrySet().iterator(); it.hasNext(); )
+                    {
+                        Map.Entry<Long, String> owner = it.next();
+
+                        if (!owner.getValue().equals(player)) continue;
+
+                        open.remove(owner.getKey());
+                        it.remove();
+                    }
+                }
+                default -> {}
+            }
+        }
+
+        private void grow(int needed) throws IOException
+        {
+            int position = map.position();
+            long size = (long) position + Math.max(needed, MAP_CHUNK);
+
+            map.force();
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.position(position);
+        }
+
+        /**
+         * Rewrites the journal with only the unsettled pickups and swaps it in. Windows will not
+         * replace a file that is still mapped; the writer then keeps appending to the old one
+         * and tries again once it has grown by as much again.
+         */
+        private void compact() throws IOException
+        {
+            FileChannel old = channel;
+
+            try
+            {
+                swapIn(open.values());
+            }
+            catch (IOException e)
+            {
+                compactAt = map.position() + COMPACT_BYTES;
+                CarryOn.LOGGER.log(Level.FINE, "Could not compact carry journal " + file, e);
+                return;
+            }
+
+            map();
+            old.close();
+            compactAt = COMPACT_BYTES;
+        }
+
+        /** Writes {@code records} to a temporary file, forces it to disk and moves it over the journal. */
+        private void swapIn(Collection<byte[]> records) throws IOException
+        {
+            Path next = new File(file.getPath() + ".tmp").toPath();
+
+            try (FileChannel out = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+            {
+                for (byte[] record : records) out.write(ByteBuffer.wrap(record));
+
+                out.force(true);
+            }
+
+            try
+            {
+                Files.move(next, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException e)
+            {
+                Files.deleteIfExists(next);
+                throw e;
+            }
+        }
+
+        /** Maps the journal for appending after what is already in it. */
+        private void map() throws IOException
+        {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int position = (int) channel.size();
+
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, position + MAP_CHUNK);
+            map.position(position);
+        }
+    }
+}
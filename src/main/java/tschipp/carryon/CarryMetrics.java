@@ -0,0 +1,190 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms for what CarryOn does on the server.
+ *
+ * Recording is lock-free: counters are {@link LongAdder}s and histograms use power-of-two
+ * buckets in an {@link AtomicLongArray}. When {@link CarryOnConfig#metricsEnabled} is off,
+ * every entry point returns after a single static field read and {@link #start} does not
+ * read the clock. The numbers are shown by {@code /carryon stats} and, if
+ * {@link CarryOnConfig#metricsLogIntervalSeconds} is set, logged periodically.
+ */
+public final class CarryMetrics
+{
+    private static final LongAdder pickups = new LongAdder();
+    private static final LongAdder places = new LongAdder();
+    private static final LongAdder cooldownRejections = new LongAdder();
+    private static final LongAdder placeRejections = new LongAdder();
+    private static final LongAdder lockedRejections = new LongAdder();
+    private static final LongAdder sizeRejections = new LongAdder();
+
+    private static final Histogram pickupNanos = new Histogram();
+    private static final Histogram placeNanos = new Histogram();
+    private static final Histogram payloadBytes = new Histogram();
+
+    private static final Map<String, LongAdder> playerRejections = new ConcurrentHashMap<>();
+
+    private CarryMetrics() {}
+
+    public static boolean isEnabled()
+    {
+        return CarryOnConfig.metricsEnabled;
+    }
+
+    /** Returns a start timestamp for a timed operation, or 0 when metrics are off. */
+    public static long start()
+    {
+        return CarryOnConfig.metricsEnabled ? System.nanoTime() : 0L;
+    }
+
+    public static void pickedUp(long start)
+    {
+        if (!CarryOnConfig.metricsEnabled || start == 0L) return;
+
+        pickups.increment();
+        pickupNanos.record(System.nanoTime() - start);
+    }
+
+    public static void placed(long start)
+    {
+        if (!CarryOnConfig.metricsEnabled || start == 0L) return;
+
+        places.increment();
+        placeNanos.record(System.nanoTime() - start);
+    }
+
+    public static void payloadSize(int bytes)
+    {
+        if (CarryOnConfig.metricsEnabled) payloadBytes.record(bytes);
+    }
+
+    public static void rejectCooldown(EntityPlayer player)
+    {
+        if (CarryOnConfig.metricsEnabled) reject(cooldownRejections, player);
+    }
+
+    public static void rejectPlace(EntityPlayer player)
+    {
+        if (CarryOnConfig.metricsEnabled) reject(placeRejections, player);
+    }
+
+    public static void rejectLocked(EntityPlayer player)
+    {
+        if (CarryOnConfig.metricsEnabled) reject(lockedRejections, player);
+    }
+
+    public static void rejectTooLarge(EntityPlayer player)
+    {
+        if (CarryOnConfig.metricsEnabled) reject(sizeRejections, player);
+    }
+
+    private static void reject(LongAdder counter, EntityPlayer player)
+    {
+        counter.increment();
+
+        if (player != null) playerRejections.computeIfAbsent(player.getCommandSenderName(), k -> new LongAdder()).increment();
+    }
+
+    public static void reset()
+    {
+        pickups.reset();
+        places.reset();
+        cooldownRejections.reset();
+        placeRejections.reset();
+        lockedRejections.reset();
+        sizeRejections.reset();
+        pickupNanos.reset();
+        placeNanos.reset();
+        payloadBytes.reset();
+        playerRejections.clear();
+    }
+
+    /** Returns the current numbers as report lines, most rejected players last. */
+    public static String[] report()
+    {
+        StringBuilder players = new StringBuilder();
+
+        playerRejections.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .limit(5)
+                .forEach(e -> players.append(players.length() == 0 ? "" : ", ").append(e.getKey()).append('=').append(e.getValue().sum()));
+
+        return new String[] {
+                String.format(Locale.ROOT, "Active carries: %d blocks (%d B), %d entities (%d B); vault entries: %d",
+                        CarryRegistry.count(CarryState.BLOCK), CarryRegistry.bytes(CarryState.BLOCK),
+                        CarryRegistry.count(CarryState.ENTITY), CarryRegistry.bytes(CarryState.ENTITY), PayloadVault.size()),
+                String.format(Locale.ROOT, "Pickups: %d, places: %d", pickups.sum(), places.sum()),
+                String.format(Locale.ROOT, "Rejected: cooldown %d, place rate %d, locked %d, too large %d",
+                        cooldownRejections.sum(), placeRejections.sum(), lockedRejections.sum(), sizeRejections.sum()),
+                "Pickup time: " + pickupNanos.describe(1000.0, "us"),
+                "Place time: " + placeNanos.describe(1000.0, "us"),
+                "Payload size: " + payloadBytes.describe(1.0, "B"),
+                "Most rejected: " + (players.length() == 0 ? "none" : players)
+        };
+    }
+
+    /** Histogram with one bucket per power of two; bucket {@code b} holds values below {@code 2^b}. */
+    private static final class Histogram
+    {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value)
+        {
+            if (value < 0) value = 0;
+
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value) & 63);
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        void reset()
+        {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+
+        /** Returns the upper bound of the bucket holding the given quantile. */
+        long quantile(double q, long total)
+        {
+            long target = (long) Math.ceil(q * total), seen = 0;
+
+            for (int b = 0; b < buckets.length(); b++)
+            {
+                seen += buckets.get(b);
+
+                if (seen >= target) return b == 0 ? 0 : (1L << b) - 1;
+            }
+
+            return max.get();
+        }
+
+        String describe(double scale, String unit)
+        {
+            long total = count.sum();
+
+            if (total == 0) return "no samples";
+
+            return String.format(Locale.ROOT, "n=%d mean=%.1f%s p50<=%.1f%s p99<=%.1f%s max=%.1f%s", total,
+                    sum.sum() / (double) total / scale, unit,
+                    quantile(0.50, total) / scale, unit,
+                    quantile(0.99, total) / scale, unit,
+                    max.get() / scale, unit);
+        }
+    }
+}
@@ -4,14 +4,22 @@ import net.fabricmc.api.ModInitializer;
 import net.xiaoyu233.fml.ModResourceManager;
 import net.xiaoyu233.fml.reload.event.MITEEvents;
 
+import java.util.logging.Logger;
+
 public class CarryOn implements ModInitializer {
 
     public static String MODID = "carryon";
 
+    public static final Logger LOGGER = Logger.getLogger("CarryOn");
+
     @Override
     public void onInitialize() {
         ModResourceManager.addResourcePackDomain(MODID);
 
+        CarryOnConfig.load();
+        RateLimiter.PICKUP.configure(CarryOnConfig.pickupIntervalTicks, CarryOnConfig.pickupBurst);
+        RateLimiter.PLACE.configure(CarryOnConfig.placeIntervalTicks, CarryOnConfig.placeBurst);
+
         MITEEvents.MITE_EVENT_BUS.register(new CarryOnEvents());
     }
 }
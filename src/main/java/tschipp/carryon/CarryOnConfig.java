@@ -0,0 +1,124 @@
+package tschipp.carryon;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.logging.Level;
+
+/**
+ * Server and client tunables, read from {@code config/carryon.properties}.
+ *
+ * Missing keys are filled in with their defaults and written back, so the file
+ * always lists every available option.
+ */
+public final class CarryOnConfig
+{
+    public static final File FILE = new File("config", "carryon.properties");
+
+    /** Largest payload, in serialized NBT bytes, that may be picked up. 0 disables the limit. */
+    public static int maxPayloadBytes = 0;
+
+    /** Server ticks between pickups per player, and how many pickups may be made back to back. 0 disables the limit. */
+    public static int pickupIntervalTicks = 10;
+    public static int pickupBurst = 1;
+
+    /** Server ticks between placements per player, and how many may be made back to back. 0 disables the limit. */
+    public static int placeIntervalTicks = 0;
+    public static int placeBurst = 1;
+
+    /** Client: other players' carried blocks and entities are drawn in full up to this many blocks away, as a plain box up to the cutoff, and not at all beyond it. */
+    public static int renderFullDistance = 24;
+    public static int renderCutoffDistance = 64;
+
+    /** Client: most carried entities drawn in full per frame; the rest are drawn as boxes. 0 disables the budget. */
+    public static int renderFullBudget = 8;
+
+    /** Collect pickup/place counters and timings for {@code /carryon stats}. Off by default. */
+    public static boolean metricsEnabled = false;
+
+    /** Seconds between metrics dumps to the server log while metrics are on. 0 disables the dump. */
+    public static int metricsLogIntervalSeconds = 0;
+
+    /** Journal pickups to {@code data/carryon_journal.dat} so carries lost in a crash are put back on restart. */
+    public static boolean journalEnabled = true;
+
+    /** Put carried blocks and entities down near the carrier when it dies, logs out or the server stops. */
+    public static boolean restoreCarries = true;
+
+    /** Furthest a restored carry is first looked for from where it was lost, in blocks; queued searches widen from there. */
+    public static int restoreSearchRadius = 8;
+
+    /** Positions checked per server tick across all pending restores. */
+    public static int restoreSearchBudget = 1024;
+
+    private CarryOnConfig() {}
+
+    public static void load()
+    {
+        Properties props = new Properties();
+
+        if (FILE.exists())
+        {
+            try (InputStream in = new FileInputStream(FILE))
+            {
+                props.load(in);
+            }
+            catch (IOException e)
+            {
+                CarryOn.LOGGER.log(Level.WARNING, "Failed to read " + FILE, e);
+            }
+        }
+
+        maxPayloadBytes = Math.max(0, getInt(props, "maxPayloadBytes", maxPayloadBytes));
+        pickupIntervalTicks = Math.max(0, getInt(props, "pickupIntervalTicks", pickupIntervalTicks));
+        pickupBurst = Math.max(1, getInt(props, "pickupBurst", pickupBurst));
+        placeIntervalTicks = Math.max(0, getInt(props, "placeIntervalTicks", placeIntervalTicks));
+        placeBurst = Math.max(1, getInt(props, "placeBurst", placeBurst));
+        renderFullDistance = Math.max(0, getInt(props, "renderFullDistance", renderFullDistance));
+        renderCutoffDistance = Math.max(renderFullDistance, getInt(props, "renderCutoffDistance", renderCutoffDistance));
+        renderFullBudget = Math.max(0, getInt(props, "renderFullBudget", renderFullBudget));
+        metricsEnabled = getInt(props, "metricsEnabled", metricsEnabled ? 1 : 0) != 0;
+        metricsLogIntervalSeconds = Math.max(0, getInt(props, "metricsLogIntervalSeconds", metricsLogIntervalSeconds));
+        journalEnabled = getInt(props, "journalEnabled", journalEnabled ? 1 : 0) != 0;
+        restoreCarries = getInt(props, "restoreCarries", restoreCarries ? 1 : 0) != 0;
+        restoreSearchRadius = Math.max(0, getInt(props, "restoreSearchRadius", restoreSearchRadius));
+        restoreSearchBudget = Math.max(1, getInt(props, "restoreSearchBudget", restoreSearchBudget));
+
+        File dir = FILE.getParentFile();
+
+        if (dir != null && !dir.exists()) dir.mkdirs();
+
+        try (OutputStream out = new FileOutputStream(FILE))
+        {
+            props.store(out, "CarryOn configuration");
+        }
+        catch (IOException e)
+        {
+            CarryOn.LOGGER.log(Level.WARNING, "Failed to write " + FILE, e);
+        }
+    }
+
+    private static int getInt(Properties props, String key, int def)
+    {
+        String value = props.getProperty(key);
+
+        if (value != null)
+        {
+            try
+            {
+                return Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                CarryOn.LOGGER.warning("Invalid value for " + key + ": " + value);
+            }
+        }
+
+        props.setProperty(key, Integer.toString(def));
+        return def;
+    }
+}
@@ -4,5 +4,13 @@ public final class CarryOnData
 {
     public static final String NO_DROP_KEY = "carryon:nodrop";
 
+    public static final String PAYLOAD_SIZE_KEY = "carryon:size";
+
+    /** Vault token of the payload a carry stack stands for; see {@link PayloadVault}. */
+    public static final String TOKEN_KEY = "carryon:token";
+
+    /** {@link PayloadCodec} header of the carried payload: block id and meta, or entity name. */
+    public static final String HEADER_KEY = "carryon:header";
+
     private CarryOnData() {}
 }
\ No newline at end of file
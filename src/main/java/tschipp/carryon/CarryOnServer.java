@@ -0,0 +1,94 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Server lifecycle hooks for CarryOn, called from the server mixins.
+ *
+ * Everything here runs on the server thread only.
+ */
+public final class CarryOnServer
+{
+    private static long tick;
+
+    private CarryOnServer() {}
+
+    /** Number of server ticks since the server started. */
+    public static long currentTick()
+    {
+        return tick;
+    }
+
+    public static void onServerTickStart(MinecraftServer server)
+    {
+        if (tick == 0) CarryJournal.open(server);
+    }
+
+    public static void onServerTick(MinecraftServer server)
+    {
+        tick++;
+
+        int interval = CarryOnConfig.metricsLogIntervalSeconds * 20;
+
+        if (CarryMetrics.isEnabled() && interval > 0 && tick % interval == 0)
+        {
+            for (String line : CarryMetrics.report()) CarryOn.LOGGER.info("[stats] " + line);
+        }
+
+        CarryRestore.tick();
+        CarryJournal.commit();
+    }
+
+    public static void onWorldsSaved(MinecraftServer server)
+    {
+        CarryJournal.worldsSaved();
+    }
+
+    public static void onPlayerLogout(ServerPlayer player)
+    {
+        CarryRestore.handBack(player, player, true);
+        CarryRestore.takeFrom(player, false);
+        CarryRegistry.end(player);
+        forgetPlayer(player.entityId);
+        PayloadVault.unload(player);
+    }
+
+    /** Called before a dying player's inventory is dropped. */
+    public static void onPlayerDeath(ServerPlayer player)
+    {
+        if (!player.worldObj.getGameRules().getGameRuleBooleanValue("keepInventory")) CarryRestore.takeFrom(player, true);
+    }
+
+    /** Called once players are saved and kicked, right before the worlds are saved for the last time. */
+    public static void onServerStopping(MinecraftServer server)
+    {
+        CarryRestore.drain();
+    }
+
+    /** Called before a player is replaced by a new entity (respawn, dimension change through death). */
+    public static void onPlayerRespawn(ServerPlayer player)
+    {
+        forgetPlayer(player.entityId);
+    }
+
+    /** Called after players and worlds have been saved, so the journal is closed with every carry settled. */
+    public static void onServerStop(MinecraftServer server)
+    {
+        CarryJournal.close();
+        CarryRestore.clear();
+        PickupRaycast.clear();
+        CarryRegistry.clear();
+        RateLimiter.PICKUP.clear();
+        RateLimiter.PLACE.clear();
+        PayloadVault.clear();
+        CarryMetrics.reset();
+        tick = 0;
+    }
+
+    private static void forgetPlayer(int entityId)
+    {
+        RateLimiter.PICKUP.remove(entityId);
+        RateLimiter.PLACE.remove(entityId);
+    }
+}
@@ -0,0 +1,149 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import tschipp.carryon.items.ItemEntity;
+import tschipp.carryon.items.ItemTile;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Server-wide index of the carries in progress, fed by pickup and placement.
+ *
+ * Each online carrier has one {@link Carry}. It records what is carried, the payload
+ * size, where it was picked up and on which tick. Carries can be looked up by player name
+ * in constant time, and iterated per {@link CarryState} kind in pickup order. Counts and
+ * payload bytes per kind are kept as running totals. Listing, restoring and accounting
+ * therefore never have to look into players' inventories.
+ *
+ * A carry leaves the registry when it is placed, restored or its carrier logs out. Carries
+ * saved with a player come back when it logs in again, with its login position and tick
+ * standing in for the unknown origin. Only ever touched from the server thread.
+ */
+public final class CarryRegistry
+{
+    private static final Map<String, Carry> byPlayer = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private static final Map<String, Carry>[] byKind = new Map[] { null, new LinkedHashMap<>(), new LinkedHashMap<>() };
+
+    private static final int[] counts = new int[3];
+    private static final long[] bytes = new long[3];
+
+    private CarryRegistry() {}
+
+    /** Registers the carry a player has just been handed. {@code x, y, z} is where it came from. */
+    public static void begin(EntityPlayer player, ItemStack stack, World world, int x, int y, int z)
+    {
+        int kind = CarryState.kindOf(stack);
+
+        if (kind == CarryState.NONE) return;
+
+        String key = kind == CarryState.BLOCK ? ItemTile.TILE_DATA_KEY : ItemEntity.ENTITY_DATA_KEY;
+        Block block = kind == CarryState.BLOCK ? ItemTile.getBlock(stack) : null;
+        String what = kind == CarryState.BLOCK ? block != null ? block.getLocalizedName() : "?" : ItemEntity.getEntityName(stack);
+
+        add(new Carry(player.getCommandSenderName(), kind, what, ItemTile.getToken(stack), PayloadWeight.get(stack, key),
+                world.provider.dimensionId, x, y, z, CarryOnServer.currentTick()));
+    }
+
+    /** Registers a carry a player was saved with, once it is back on the server. */
+    public static void resume(EntityPlayer player)
+    {
+        begin(player, player.getHeldItemStack(), player.worldObj, MathHelper.floor_double(player.posX),
+                MathHelper.floor_double(player.posY), MathHelper.floor_double(player.posZ));
+    }
+
+    /** Removes a player's carry, if any, and returns it. */
+    public static Carry end(EntityPlayer player)
+    {
+        Carry carry = byPlayer.remove(player.getCommandSenderName());
+
+        if (carry != null) unindex(carry);
+
+        return carry;
+    }
+
+    public static Carry get(EntityPlayer player)
+    {
+        return byPlayer.get(player.getCommandSenderName());
+    }
+
+    public static boolean isCarrying(EntityPlayer player)
+    {
+        return byPlayer.containsKey(player.getCommandSenderName());
+    }
+
+    /** Carries of one kind, oldest first. The view is live and must not be modified. */
+    public static Collection<Carry> of(int kind)
+    {
+        return kind == CarryState.BLOCK || kind == CarryState.ENTITY ? Collections.unmodifiableCollection(byKind[kind].values()) : Collections.emptyList();
+    }
+
+    public static int count(int kind)
+    {
+        return kind == CarryState.BLOCK || kind == CarryState.ENTITY ? counts[kind] : 0;
+    }
+
+    /** Payload bytes held by carries of one kind. */
+    public static long bytes(int kind)
+    {
+        return kind == CarryState.BLOCK || kind == CarryState.ENTITY ? bytes[kind] : 0L;
+    }
+
+    public static void clear()
+    {
+        byPlayer.clear();
+        byKind[CarryState.BLOCK].clear();
+        byKind[CarryState.ENTITY].clear();
+        counts[CarryState.BLOCK] = counts[CarryState.ENTITY] = 0;
+        bytes[CarryState.BLOCK] = bytes[CarryState.ENTITY] = 0L;
+    }
+
+    private static void add(Carry carry)
+    {
+        Carry previous = byPlayer.put(carry.player, carry);
+
+        if (previous != null) unindex(previous);
+
+        byKind[carry.kind].put(carry.player, carry);
+        counts[carry.kind]++;
+        bytes[carry.kind] += carry.bytes;
+    }
+
+    private static void unindex(Carry carry)
+    {
+        byKind[carry.kind].remove(carry.player);
+        counts[carry.kind]--;
+        bytes[carry.kind] -= carry.bytes;
+    }
+
+    public static final class Carry
+    {
+        public final String player;
+        public final int kind;
+        /** Block or entity name, for listings. */
+        public final String what;
+        public final long token;
+        public final int bytes;
+        public final int dimension, x, y, z;
+        public final long startTick;
+
+        Carry(String player, int kind, String what, long token, int bytes, int dimension, int x, int y, int z, long startTick)
+        {
+            this.player = player;
+            this.kind = kind;
+            this.what = what;
+            this.token = token;
+            this.bytes = bytes;
+            this.dimension = dimension;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.startTick = startTick;
+        }
+    }
+}
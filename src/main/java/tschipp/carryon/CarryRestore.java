@@ -0,0 +1,347 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import tschipp.carryon.items.ItemEntity;
+import tschipp.carryon.items.ItemTile;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+
+/**
+ * Puts carried blocks and entities back into the world when their carrier can no longer
+ * hold them: on death, on logout or kick, when the server stops, and for carries replayed
+ * from the {@link CarryJournal}.
+ *
+ * A carrier's payload stays in its hand and vault until it has been placed. On logout the
+ * spot is searched for at once, up to {@link CarryOnConfig#restoreSearchRadius}, since the
+ * player is saved right after; if nothing is free the player is saved still carrying it.
+ * A dying carrier cannot keep it in its hand, so a payload that finds no spot at once is
+ * queued, its vault entry kept, and handed back on respawn or logout if it is still there.
+ *
+ * Each server tick the queue gets {@link CarryOnConfig#restoreSearchBudget} position checks
+ * in total. They are spent on expanding cubic shells around each position, looking only at
+ * loaded chunks and stopping at the first free spot. A search that runs out of budget
+ * resumes on the next tick where it left off; one that finds nothing starts over on a later
+ * tick, twice as far out each time up to {@link #MAX_WIDENING} times the configured radius.
+ * A queued payload stays journaled until the world has been saved with it, so it also
+ * survives a crash.
+ */
+public final class CarryRestore
+{
+    /** How far beyond {@link CarryOnConfig#restoreSearchRadius} a queued search may widen. */
+    private static final int MAX_WIDENING = 4;
+
+    private static final Deque<Pending> queue = new ArrayDeque<>();
+
+    private CarryRestore() {}
+
+    /**
+     * Puts whatever the player carries down where the player is. If no spot is free, a
+     * leaving player keeps the carry and a dying one has it queued until it respawns.
+     */
+    public static void takeFrom(EntityPlayer player, boolean dying)
+    {
+        if (!CarryOnConfig.restoreCarries || player.worldObj.isRemote) return;
+
+        ItemStack held = player.getHeldItemStack();
+        int kind = CarryState.kindOf(held);
+
+        if (kind == CarryState.NONE) return;
+
+        long token = ItemTile.getToken(held);
+        byte[] payload = token != 0L ? PayloadVault.encoded(token, player) : null;
+
+        if (payload == null)
+        {
+            NBTTagCompound nbt = kind == CarryState.BLOCK ? ItemTile.getTileData(held, player) : ItemEntity.getEntityData(held, player);
+            Block block = ItemTile.getBlock(held);
+            String name = ItemEntity.getEntityName(held);
+
+            byte[] header = kind == CarryState.BLOCK
+                    ? block == null ? null : PayloadCodec.tileHeader(block.blockID, ItemTile.getMeta(held))
+                    : name == null || name.isEmpty() || nbt == null ? null : PayloadCodec.entityHeader(name);
+
+            if (header != null) payload = PayloadCodec.encode(header, nbt != null ? nbt : new NBTTagCompound());
+        }
+
+        if (payload == null)
+        {
+            CarryOn.LOGGER.warning("Cannot restore unreadable carry of " + player.getCommandSenderName());
+            return;
+        }
+
+        if (token == 0L) token = ThreadLocalRandom.current().nextLong() | 1L;
+
+        Pending pending = new Pending((WorldServer) player.worldObj, MathHelper.floor_double(player.posX),
+                MathHelper.floor_double(player.posY), MathHelper.floor_double(player.posZ), token, payload, player.getCommandSenderName());
+
+        pending.carrier = player;
+        pending.stack = held;
+        pending.search(Integer.MAX_VALUE);
+
+        if (pending.done) return;
+
+        if (!dying)
+        {
+            CarryOn.LOGGER.info("No free spot near " + pending.x + "," + pending.y + "," + pending.z + " for the carry of "
+                    + pending.owner + "; it stays with the player");
+            return;
+        }
+
+        // The hand is dropped on death, so the stack waits in the queue and the payload in the vault
+        player.setHeldItemStack(null);
+        CarryRegistry.end(player);
+        queue.add(pending);
+        CarryJournal.restore(token, pending.world, pending.x, pending.y, pending.z, payload);
+    }
+
+    /** Queues a journaled payload to be put down as close to the given position as possible. */
+    public static void enqueue(WorldServer world, int x, int y, int z, long token, byte[] payload, String owner)
+    {
+        queue.add(new Pending(world, x, Math.max(1, Math.min(y, 255)), z, token, payload, owner));
+    }
+
+    /**
+     * Hands carries still queued for {@code old} to {@code fresh}, which replaces it on
+     * respawn, or is the same player when it logs out. A carry left in a dead player's hand
+     * is moved over as well, since the new player starts with an empty inventory.
+     */
+    public static void handBack(EntityPlayer old, EntityPlayer fresh, boolean keepEverything)
+    {
+        if (fresh.worldObj.isRemote) return;
+
+        for (Iterator<Pending> it = queue.iterator(); it.hasNext(); )
+        {
+            Pending pending = it.next();
+
+            if (pending.carrier != old) continue;
+
+            if (fresh.getHeldItemStack() != null)
+            {
+                pending.carrier = fresh;
+                continue;
+            }
+
+            it.remove();
+            fresh.setHeldItemStack(pending.stack);
+            CarryRegistry.resume(fresh);
+            CarryJournal.settle(pending.token);
+            CarryJournal.pickup(fresh, pending.token, fresh.worldObj, pending.x, pending.y, pending.z);
+        }
+
+        if (old != fresh && !keepEverything && fresh.getHeldItemStack() == null && CarryState.kindOf(old.getHeldItemStack()) != CarryState.NONE)
+        {
+            fresh.setHeldItemStack(old.getHeldItemStack());
+            old.setHeldItemStack(null);
+            CarryRegistry.resume(fresh);
+        }
+    }
+
+    /** Whether a payload is queued to be put down, so its vault entry must stay. */
+    public static boolean isPending(long token)
+    {
+        for (Pending pending : queue) if (pending.token == token) return true;
+
+        return false;
+    }
+
+    /** Spends this tick's search budget on the queue, oldest first. */
+    public static void tick()
+    {
+        run(CarryOnConfig.restoreSearchBudget);
+    }
+
+    /**
+     * Gives everything still queued one last search as wide as it may go; called while the
+     * server stops, when there is no tick left to protect. What still finds no spot stays in
+     * the journal for the next start.
+     */
+    public static void drain()
+    {
+        int widest = widest();
+
+        for (Pending pending : queue) pending.limit = widest;
+
+        run(Integer.MAX_VALUE);
+
+        for (Pending pending : queue)
+            CarryOn.LOGGER.warning("No free spot within " + widest + " blocks of " + pending.x + "," + pending.y + "," + pending.z
+                    + " for the carry of " + pending.owner + "; it stays in the journal for the next start");
+    }
+
+    public static void clear()
+    {
+        queue.clear();
+    }
+
+    /** Searches the queue oldest first; each payload gets at most one full search per call. */
+    private static void run(int budget)
+    {
+        int left = queue.size();
+
+        while (budget > 0 && left > 0)
+        {
+            Pending pending = queue.peek();
+
+            budget = pending.search(budget);
+
+            if (pending.done)
+            {
+                queue.poll();
+                left--;
+            }
+            else if (pending.exhausted)
+            {
+                pending.exhausted = false;
+                queue.add(queue.poll());
+                left--;
+            }
+        }
+    }
+
+    private static int widest()
+    {
+        return Math.max(CarryOnConfig.restoreSearchRadius, 1) * MAX_WIDENING;
+    }
+
+    /** Puts a payload down at a position already known to be free; returns false if the payload could not be rebuilt. */
+    private static boolean place(WorldServer world, int x, int y, int z, byte[] payload)
+    {
+        NBTTagCompound nbt;
+
+        try
+        {
+            nbt = PayloadCodec.decodeBody(payload);
+        }
+        catch (IllegalStateException e)
+        {
+            CarryOn.LOGGER.log(Level.WARNING, "Failed to decode a carry to restore", e);
+            return false;
+        }
+
+        if (PayloadCodec.kind(payload) == PayloadCodec.KIND_ENTITY)
+        {
+            Entity entity = EntityList.createEntityByName(PayloadCodec.entityName(payload), world);
+
+            if (entity == null) return false;
+
+            entity.readFromNBT(CarryFastForward.apply(entity, nbt, world));
+            entity.setPosition(x + 0.5, y, z + 0.5);
+
+            return world.spawnEntityInWorld(entity);
+        }
+
+        Block block = Block.blocksList[PayloadCodec.blockId(payload)];
+
+        return block != null && ItemTile.placeWithTile(world, x, y, z, block, PayloadCodec.meta(payload), world.getBlockId(x, y, z), nbt);
+    }
+
+    /** Whether a payload of the given kind could be put down at a position in a loaded chunk, as a player could. */
+    private static boolean isFree(World world, int x, int y, int z, boolean entity)
+    {
+        if (y < 1 || y > 254 || !world.blockExists(x, y, z)) return false;
+
+        if (entity)
+            return world.isAirOrPassableBlock(x, y, z, false) && world.isAirOrPassableBlock(x, y + 1, z, false) && !world.isAirOrPassableBlock(x, y - 1, z, true);
+
+        int id = world.getBlockId(x, y, z);
+        Block existing = Block.blocksList[id];
+
+        return id == 0 || existing != null && existing.isAlwaysReplaceable();
+    }
+
+    private static final class Pending
+    {
+        final WorldServer world;
+        final int x, y, z;
+        final long token;
+        final byte[] payload;
+        final String owner;
+        final boolean entity;
+
+        /** The player the payload is taken from and its carry stack, or null for a journaled carry. */
+        EntityPlayer carrier;
+        ItemStack stack;
+
+        /** Current shell and position within the (2r+1)^3 cube around the origin, and the widest shell searched. */
+        int radius, index, limit = CarryOnConfig.restoreSearchRadius;
+        boolean done, exhausted, warned;
+
+        Pending(WorldServer world, int x, int y, int z, long token, byte[] payload, String owner)
+        {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.token = token;
+            this.payload = payload;
+            this.owner = owner;
+            this.entity = PayloadCodec.kind(payload) == PayloadCodec.KIND_ENTITY;
+        }
+
+        /** Checks up to {@code budget} positions and returns what is left of it. */
+        int search(int budget)
+        {
+            for (; radius <= limit; radius++, index = 0)
+            {
+                int side = 2 * radius + 1;
+                int cube = side * side * side;
+
+                for (; index < cube; index++)
+                {
+                    int dx = index % side - radius;
+                    int dy = index / side % side - radius;
+                    int dz = index / (side * side) - radius;
+
+                    // Inner positions belong to shells already searched
+                    if (Math.max(Math.abs(dx), Math.max(Math.abs(dy), Math.abs(dz))) != radius) continue;
+
+                    if (budget-- <= 0) return 0;
+
+                    if (isFree(world, x + dx, y + dy, z + dz, entity) && finish(x + dx, y + dy, z + dz)) return budget;
+                }
+            }
+
+            // Start over on a later tick, as blocks may have moved, and look further out
+            if (limit < widest()) limit = Math.min(limit * 2 + 1, widest());
+
+            radius = 0;
+            index = 0;
+            exhausted = true;
+
+            return budget;
+        }
+
+        private boolean finish(int px, int py, int pz)
+        {
+            if (!place(world, px, py, pz, payload))
+            {
+                if (!warned) CarryOn.LOGGER.warning("Could not restore carry of " + owner + " at " + px + "," + py + "," + pz + "; still looking");
+
+                warned = true;
+                return false;
+            }
+
+            done = true;
+
+            if (carrier != null)
+            {
+                PayloadVault.withdraw(token, carrier);
+
+                if (carrier.getHeldItemStack() == stack) carrier.setHeldItemStack(null);
+
+                CarryRegistry.end(carrier);
+            }
+
+            // Journaled where it went, until the world is saved with it
+            CarryJournal.restore(token, world, px, py, pz, payload);
+            CarryJournal.restored(token);
+            CarryOn.LOGGER.info("Restored carry of " + owner + " at " + px + "," + py + "," + pz);
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import tschipp.carryon.items.ItemEntity;
+import tschipp.carryon.items.ItemTile;
+
+import java.util.UUID;
+
+/**
+ * Slows carriers down through {@code EntityLivingBase.getSpeedBoostVsSlowDown}.
+ *
+ * That sum of slowness, haste and cobweb is what walking, flying, jumping through the air,
+ * climbing and the FOV all scale by, so adding the carry level to it slows every path
+ * the same way the slowness effect does. The level is cached in the player's
+ * {@link CarryState} and only recomputed when the held stack changes, and both sides work
+ * it out from the held stack, so nothing is sent and nothing runs per tick.
+ */
+public final class CarrySlowdown
+{
+    /** The movement-speed modifier earlier builds applied; removed from players saved with it. */
+    private static final UUID MODIFIER_ID = UUID.fromString("91b8e16e-9750-40dd-8c80-e1882ef8ad20");
+
+    /** Same strength per level as the slowness effect. */
+    private static final float AMOUNT_PER_LEVEL = -0.2f;
+
+    private CarrySlowdown() {}
+
+    /** Returns the slowdown level for a held stack: 0 if it is not a carry, otherwise 1-4 by payload weight. */
+    public static int level(ItemStack stack)
+    {
+        if (stack == null) return 0;
+
+        if (stack.getItem() == CarryOnEvents.TILE_ITEM) return ItemTile.hasTileData(stack) ? ItemTile.potionLevel(stack) : 0;
+
+        if (stack.getItem() == CarryOnEvents.ENTITY_ITEM) return ItemEntity.hasEntityData(stack) ? ItemEntity.potionLevel(stack) : 0;
+
+        return 0;
+    }
+
+    /**
+     * Adds the carry slowdown to the value {@code getSpeedBoostVsSlowDown} returned.
+     *
+     * That method softens a negative total by the paralysis resistance (Free Action), so
+     * the raw total is recovered first, the carry amount added to it and the result
+     * softened again, as if the carry were one more slowness effect.
+     */
+    public static float adjust(float speedModifier, int level, float resistance)
+    {
+        float softening = 1.0f - resistance;
+        float total = speedModifier < 0.0f && softening > 0.0f ? speedModifier / softening : speedModifier;
+
+        total += AMOUNT_PER_LEVEL * (level + 1);
+
+        return total < 0.0f ? total * softening : total;
+    }
+
+    /** Drops the movement-speed modifier a player may have been saved with. */
+    public static void clearModifier(EntityLivingBase living)
+    {
+        AttributeInstance speed = living.getEntityAttribute(SharedMonsterAttributes.movementSpeed);
+
+        if (speed == null) return;
+
+        AttributeModifier modifier = speed.getModifier(MODIFIER_ID);
+
+        if (modifier != null) speed.removeModifier(modifier);
+    }
+}
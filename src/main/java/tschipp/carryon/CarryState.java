@@ -0,0 +1,78 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import tschipp.carryon.interfaces.ICarryState;
+
+/**
+ * What a player is carrying, kept on the player entity.
+ *
+ * The player tick hands it the held stack and it only re-classifies when that is a
+ * different object than last time. Hooks that run per frame, per render pass or per key
+ * read the result instead of looking at the held stack themselves. Changes show up on
+ * the player's next tick.
+ */
+public final class CarryState
+{
+    public static final int NONE = 0;
+    public static final int BLOCK = 1;
+    public static final int ENTITY = 2;
+
+    private ItemStack stack;
+    private boolean creative;
+    private int kind = NONE;
+    private int slowdown;
+
+    public static CarryState of(EntityPlayer player)
+    {
+        return ((ICarryState) player).carryOn$getCarryState();
+    }
+
+    /** Returns the carry kind of an entity; {@link #NONE} for anything but a player. */
+    public static int kindOf(Entity entity)
+    {
+        return entity instanceof EntityPlayer player ? of(player).kind : NONE;
+    }
+
+    public static int kindOf(ItemStack stack)
+    {
+        if (stack == null) return NONE;
+
+        if (stack.getItem() == CarryOnEvents.TILE_ITEM) return BLOCK;
+
+        if (stack.getItem() == CarryOnEvents.ENTITY_ITEM) return ENTITY;
+
+        return NONE;
+    }
+
+    public void update(ItemStack held, boolean creative)
+    {
+        if (held == stack && creative == this.creative) return;
+
+        stack = held;
+        this.creative = creative;
+        kind = kindOf(held);
+        slowdown = creative ? 0 : CarrySlowdown.level(held);
+    }
+
+    public int kind()
+    {
+        return kind;
+    }
+
+    public boolean isCarrying()
+    {
+        return kind != NONE;
+    }
+
+    /** The carry slowdown level, 0 when not carrying or in creative; see {@link CarrySlowdown}. */
+    public int slowdown()
+    {
+        return slowdown;
+    }
+
+    /** The held stack the state was taken from. */
+    public ItemStack stack()
+    {
+        return stack;
+    }
+}
@@ -0,0 +1,141 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import tschipp.carryon.items.ItemEntity;
+import tschipp.carryon.items.ItemTile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Tells observers what another player is carrying without sending them the carry stack.
+ *
+ * Equipment updates for a carry stack go out to tracking players as the bare item,
+ * with no tag, and are followed by a small {@value #CHANNEL} packet holding only the
+ * render descriptor: the {@link PayloadCodec} header and, for entities, the appearance
+ * tag. The packet is sent when the held item changes to or from a carry stack and when
+ * a player starts tracking the carrier, never per tick. The carrier itself still gets
+ * its full stack through the normal inventory sync.
+ *
+ * <pre>
+ * entityId(int) headerLength(byte) header [render(named NBT) if the header is an entity]
+ * </pre>
+ * A header length of 0 means the player is not carrying anything.
+ */
+public final class CarrySync
+{
+    public static final String CHANNEL = "carryon:state";
+
+    private CarrySync() {}
+
+    public static boolean isCarryStack(ItemStack stack)
+    {
+        return stack != null && (stack.getItem() == CarryOnEvents.TILE_ITEM || stack.getItem() == CarryOnEvents.ENTITY_ITEM);
+    }
+
+    /**
+     * Rewrites an equipment packet bound for observers. A carry stack is replaced by its
+     * bare item; every other packet is returned unchanged.
+     */
+    public static Packet forObservers(Packet packet)
+    {
+        if (!(packet instanceof Packet5PlayerInventory inventory) || !isCarryStack(inventory.getItemSlot())) return packet;
+
+        ItemStack stack = inventory.getItemSlot();
+
+        Packet5PlayerInventory bare = new Packet5PlayerInventory(inventory.entityID, inventory.slot, new ItemStack(stack.itemID, stack.stackSize, stack.getItemSubtype()));
+
+        bare.full_inventory = inventory.full_inventory;
+
+        return bare;
+    }
+
+    /**
+     * Undoes a pickup or placement the client predicted but the server turned down.
+     * The player gets the real block at the given position (skipped for y &lt; 0) with
+     * its tile description, the real held slot, and its own carry-state packet, which
+     * tells {@link tschipp.carryon.client.CarryPrediction} to drop the prediction.
+     */
+    public static void rollback(EntityPlayer player, int x, int y, int z)
+    {
+        if (!(player instanceof ServerPlayer serverPlayer) || serverPlayer.playerNetServerHandler == null) return;
+
+        NetServerHandler net = serverPlayer.playerNetServerHandler;
+        World world = player.worldObj;
+
+        if (y >= 0)
+        {
+            net.sendPacketToPlayer(new Packet53BlockChange(x, y, z, world));
+
+            TileEntity tile = world.getBlockTileEntity(x, y, z);
+            Packet description = tile == null ? null : tile.getDescriptionPacket();
+
+            if (description != null) net.sendPacketToPlayer(description);
+        }
+
+        Slot slot = player.inventoryContainer.getSlotFromInventory(player.inventory, player.inventory.currentItem);
+
+        if (slot != null) net.sendPacketToPlayer(new Packet103SetSlot(player.inventoryContainer.windowId, slot.slotNumber, player.getHeldItemStack()));
+
+        net.sendPacketToPlayer(createPacket(player));
+    }
+
+    /** Rolls back a predicted entity pickup; there is no block to resend. */
+    public static void rollback(EntityPlayer player)
+    {
+        rollback(player, 0, -1, 0);
+    }
+
+    /** Builds the carry-state packet for a player, describing its held stack or the lack of one. */
+    public static Packet250CustomPayload createPacket(EntityPlayer player)
+    {
+        ItemStack stack = player.getHeldItemStack();
+
+        byte[] header = null;
+        NBTTagCompound render = null;
+
+        if (ItemTile.hasTileData(stack))
+        {
+            Block block = ItemTile.getBlock(stack);
+
+            if (block != null) header = PayloadCodec.tileHeader(block.blockID, ItemTile.getMeta(stack));
+        }
+        else if (ItemEntity.hasEntityData(stack))
+        {
+            String name = ItemEntity.getEntityName(stack);
+
+            if (name != null && !name.isEmpty())
+            {
+                header = PayloadCodec.entityHeader(name);
+                render = stack.stackTagCompound.getCompoundTag(ItemEntity.RENDER_DATA_KEY);
+            }
+        }
+
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(player.entityId);
+
+            if (header == null)
+            {
+                out.writeByte(0);
+            }
+            else
+            {
+                out.writeByte(header.length);
+                out.write(header);
+
+                if (render != null) NBTBase.writeNamedTag(render, out);
+            }
+
+            return new Packet250CustomPayload(CHANNEL, bytes.toByteArray());
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Failed to write carry state", e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@code /carryon stats [reset]}: shows or clears the numbers collected by {@link CarryMetrics}.
+ * {@code /carryon list}: lists the carries in progress from the {@link CarryRegistry}.
+ */
+public class CommandCarryOn extends CommandBase {
+
+    @Override
+    public String getCommandName()
+    {
+        return "carryon";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel()
+    {
+        return 2;
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender)
+    {
+        return "/carryon <stats [reset]|list>";
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args)
+    {
+        if (args.length > 0 && args[0].equalsIgnoreCase("list"))
+        {
+            list(sender);
+            return;
+        }
+
+        if (args.length == 0 || !args[0].equalsIgnoreCase("stats")) throw new WrongUsageException(getCommandUsage(sender));
+
+        if (!CarryMetrics.isEnabled())
+        {
+            reply(sender, "CarryOn metrics are off; set metricsEnabled=1 in " + CarryOnConfig.FILE.getPath());
+            return;
+        }
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset"))
+        {
+            CarryMetrics.reset();
+            reply(sender, "CarryOn metrics reset");
+            return;
+        }
+
+        for (String line : CarryMetrics.report()) reply(sender, line);
+    }
+
+    @Override
+    public List addTabCompletionOptions(ICommandSender sender, String[] args)
+    {
+        if (args.length == 1) return getListOfStringsMatchingLastWord(args, "stats", "list");
+
+        if (args.length == 2 && args[0].equalsIgnoreCase("stats")) return getListOfStringsMatchingLastWord(args, "reset");
+
+        return null;
+    }
+
+    private static void list(ICommandSender sender)
+    {
+        int total = CarryRegistry.count(CarryState.BLOCK) + CarryRegistry.count(CarryState.ENTITY);
+
+        reply(sender, total == 0 ? "Nobody is carrying anything" : total + " carries in progress:");
+
+        long now = CarryOnServer.currentTick();
+
+        for (int kind : new int[] { CarryState.BLOCK, CarryState.ENTITY })
+        {
+            for (CarryRegistry.Carry carry : CarryRegistry.of(kind))
+            {
+                reply(sender, String.format(Locale.ROOT, "%s: %s, %d B, from %d,%d,%d in dimension %d, %ds ago",
+                        carry.player, carry.what, carry.bytes, carry.x, carry.y, carry.z, carry.dimension, (now - carry.startTick) / 20));
+            }
+        }
+    }
+
+    private static void reply(ICommandSender sender, String line)
+    {
+        sender.sendChatToPlayer(ChatMessageComponent.createFromText(line));
+    }
+}
@@ -0,0 +1,356 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary form of a carried payload.
+ *
+ * <pre>
+ * header : format(1) kind(1) [blockId(varint) meta(varint) | nameLength(varint) name(utf8)]
+ * body   : rawLength(varint) deflate(hasItems(1) [count(varint) slot*] rest(named NBT))
+ * </pre>
+ *
+ * The header is what carry stacks hold as their render descriptor, and it can be read
+ * without touching the body. The body stores the standard inventory {@code Items} list
+ * as varint-encoded slots, falls back to plain NBT for any slot it does not recognise,
+ * and deflates the result.
+ */
+public final class PayloadCodec
+{
+    public static final byte FORMAT = 1;
+
+    public static final byte KIND_TILE = 1;
+    public static final byte KIND_ENTITY = 2;
+
+    private static final String ITEMS_KEY = "Items";
+
+    private static final int SLOT_TAG = 1;
+    private static final int SLOT_QUALITY = 2;
+    private static final int SLOT_ARTIFACT = 4;
+    private static final int SLOT_RAW = 0x80;
+
+    private PayloadCodec() {}
+
+    public static byte[] tileHeader(int blockId, int meta)
+    {
+        byte[] buf = new byte[12];
+        buf[0] = FORMAT;
+        buf[1] = KIND_TILE;
+        int pos = writeVarInt(buf, 2, blockId);
+        pos = writeVarInt(buf, pos, meta);
+        return Arrays.copyOf(buf, pos);
+    }
+
+    public static byte[] entityHeader(String name)
+    {
+        byte[] utf = name.getBytes(StandardCharsets.UTF_8);
+        byte[] buf = new byte[2 + 5 + utf.length];
+        buf[0] = FORMAT;
+        buf[1] = KIND_ENTITY;
+        int pos = writeVarInt(buf, 2, utf.length);
+        System.arraycopy(utf, 0, buf, pos, utf.length);
+        return Arrays.copyOf(buf, pos + utf.length);
+    }
+
+    /** Returns the payload kind, or 0 if the data is not a recognised header. */
+    public static int kind(byte[] data)
+    {
+        return data != null && data.length >= 2 && data[0] == FORMAT ? data[1] : 0;
+    }
+
+    public static int blockId(byte[] data)
+    {
+        return readVarInt(data, 2);
+    }
+
+    public static int meta(byte[] data)
+    {
+        return readVarInt(data, skipVarInt(data, 2));
+    }
+
+    public static String entityName(byte[] data)
+    {
+        int length = readVarInt(data, 2);
+        return new String(data, skipVarInt(data, 2), length, StandardCharsets.UTF_8);
+    }
+
+    /** Appends the encoded and deflated body to a header. */
+    public static byte[] encode(byte[] header, NBTTagCompound body)
+    {
+        try
+        {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(256);
+            writeBody(new DataOutputStream(raw), body);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(header.length + 5 + raw.size() / 2);
+            out.write(header);
+
+            byte[] length = new byte[5];
+            out.write(length, 0, writeVarInt(length, 0, raw.size()));
+
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+            try (DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater))
+            {
+                raw.writeTo(deflated);
+            }
+            finally
+            {
+                deflater.end();
+            }
+
+            return out.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Failed to encode carried payload", e);
+        }
+    }
+
+    /** Inflates and decodes the body of an encoded payload. */
+    public static NBTTagCompound decodeBody(byte[] data)
+    {
+        int pos = headerLength(data);
+        int rawLength = readVarInt(data, pos);
+        pos = skipVarInt(data, pos);
+
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+
+        try
+        {
+            inflater.setInput(data, pos, data.length - pos);
+
+            int read = 0;
+
+            while (read < rawLength)
+            {
+                int n = inflater.inflate(raw, read, rawLength - read);
+
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+
+                read += n;
+            }
+
+            if (read != rawLength) throw new IllegalStateException("Truncated carried payload");
+
+            return readBody(new DataInputStream(new ByteArrayInputStream(raw)));
+        }
+        catch (DataFormatException | IOException e)
+        {
+            throw new IllegalStateException("Failed to decode carried payload", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    private static int headerLength(byte[] data)
+    {
+        switch (kind(data))
+        {
+            case KIND_TILE:
+                return skipVarInt(data, skipVarInt(data, 2));
+            case KIND_ENTITY:
+                return skipVarInt(data, 2) + readVarInt(data, 2);
+            default:
+                throw new IllegalStateException("Unknown carried payload format");
+        }
+    }
+
+    private static void writeBody(DataOutputStream out, NBTTagCompound body) throws IOException
+    {
+        NBTTagCompound rest = new NBTTagCompound();
+        NBTTagList items = null;
+
+        for (Object tag : body.getTags())
+        {
+            NBTBase base = (NBTBase) tag;
+
+            if (ITEMS_KEY.equals(base.getName()) && base instanceof NBTTagList list) items = list;
+            else rest.setTag(base.getName(), base);
+        }
+
+        if (items == null)
+        {
+            out.writeByte(0);
+        }
+        else
+        {
+            out.writeByte(1);
+            writeVarInt(out, items.tagCount());
+
+            for (int i = 0; i < items.tagCount(); i++) writeSlot(out, items.tagAt(i));
+        }
+
+        NBTBase.writeNamedTag(rest, out);
+    }
+
+    private static NBTTagCompound readBody(DataInputStream in) throws IOException
+    {
+        NBTTagList items = null;
+
+        if (in.readByte() != 0)
+        {
+            int count = readVarInt(in);
+            items = new NBTTagList();
+
+            for (int i = 0; i < count; i++) items.appendTag(readSlot(in));
+        }
+
+        NBTTagCompound body = (NBTTagCompound) NBTBase.readNamedTag(in);
+
+        if (items != null) body.setTag(ITEMS_KEY, items);
+
+        return body;
+    }
+
+    /**
+     * Writes one inventory slot. A slot written by ItemStack.writeToNBT plus a byte
+     * "Slot" tag becomes a few varints; anything else is stored as NBT.
+     */
+    private static void writeSlot(DataOutputStream out, NBTBase tag) throws IOException
+    {
+        if (!(tag instanceof NBTTagCompound slot) || !isStandardSlot(slot))
+        {
+            out.writeByte(SLOT_RAW);
+            NBTBase.writeNamedTag(tag, out);
+            return;
+        }
+
+        int flags = 0;
+
+        if (slot.hasKey("tag")) flags |= SLOT_TAG;
+        if (slot.hasKey("quality")) flags |= SLOT_QUALITY;
+        if (slot.hasKey("is_artifact")) flags |= SLOT_ARTIFACT;
+
+        out.writeByte(flags);
+        writeVarInt(out, slot.getByte("Slot") & 0xFF);
+        writeVarInt(out, slot.getShort("id") & 0xFFFF);
+        writeVarInt(out, slot.getByte("Count") & 0xFF);
+        writeVarInt(out, (slot.getInteger("damage") << 1) ^ (slot.getInteger("damage") >> 31));
+        writeVarInt(out, slot.getShort("subtype") & 0xFFFF);
+
+        if ((flags & SLOT_QUALITY) != 0) out.writeByte(slot.getByte("quality"));
+        if ((flags & SLOT_ARTIFACT) != 0) out.writeByte(slot.getByte("is_artifact"));
+        if ((flags & SLOT_TAG) != 0) NBTBase.writeNamedTag(slot.getCompoundTag("tag"), out);
+    }
+
+    private static NBTBase readSlot(DataInputStream in) throws IOException
+    {
+        int flags = in.readUnsignedByte();
+
+        if (flags == SLOT_RAW) return NBTBase.readNamedTag(in);
+
+        NBTTagCompound slot = new NBTTagCompound();
+
+        slot.setByte("Slot", (byte) readVarInt(in));
+        slot.setShort("id", (short) readVarInt(in));
+        slot.setByte("Count", (byte) readVarInt(in));
+
+        int zigzag = readVarInt(in);
+        slot.setInteger("damage", (zigzag >>> 1) ^ -(zigzag & 1));
+        slot.setShort("subtype", (short) readVarInt(in));
+
+        if ((flags & SLOT_QUALITY) != 0) slot.setByte("quality", in.readByte());
+        if ((flags & SLOT_ARTIFACT) != 0) slot.setByte("is_artifact", in.readByte());
+        if ((flags & SLOT_TAG) != 0) slot.setCompoundTag("tag", (NBTTagCompound) NBTBase.readNamedTag(in));
+
+        return slot;
+    }
+
+    private static boolean isStandardSlot(NBTTagCompound slot)
+    {
+        int required = 0;
+
+        for (Object tag : slot.getTags())
+        {
+            NBTBase base = (NBTBase) tag;
+
+            boolean known = switch (base.getName())
+            {
+                case "Slot" -> base instanceof NBTTagByte && (required |= 1) != 0;
+                case "id" -> base instanceof NBTTagShort && (required |= 2) != 0;
+                case "Count" -> base instanceof NBTTagByte && (required |= 4) != 0;
+                case "damage" -> base instanceof NBTTagInt && (required |= 8) != 0;
+                case "subtype" -> base instanceof NBTTagShort && (required |= 16) != 0;
+                case "quality", "is_artifact" -> base instanceof NBTTagByte;
+                case "tag" -> base instanceof NBTTagCompound;
+                default -> false;
+            };
+
+            if (!known) return false;
+        }
+
+        return required == 31;
+    }
+
+    private static int writeVarInt(byte[] buf, int pos, int value)
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(byte[] buf, int pos)
+    {
+        int value = 0;
+
+        for (int shift = 0; ; shift += 7)
+        {
+            byte b = buf[pos++];
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int value = 0;
+
+        for (int shift = 0; ; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    private static int skipVarInt(byte[] buf, int pos)
+    {
+        while ((buf[pos++] & 0x80) != 0) {}
+
+        return pos;
+    }
+}
@@ -0,0 +1,247 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import tschipp.carryon.interfaces.ICarryOnData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Server-side store for carried payloads.
+ *
+ * A carried stack only holds a token and a small render descriptor; the tile or
+ * entity NBT it stands for lives here. Each payload is kept inside the carrier's
+ * {@link ICarryOnData} compound under {@value #VAULT_KEY}, so it is saved and loaded
+ * with the player's {@code .dat}, and a token index gives O(1) lookup from a stack
+ * alone. The index is only ever touched from the server thread.
+ *
+ * A token only resolves for the player whose vault holds it, so a copied or handed-over
+ * stack gets nothing. Before a player is saved and after it is loaded, {@link #release}
+ * drops the payloads no carry stack of that player refers to any more.
+ *
+ * Payloads are held in {@link PayloadCodec} form and only decoded when they are
+ * placed. Entries saved as plain compounds by earlier versions are still read.
+ */
+public final class PayloadVault
+{
+    public static final String VAULT_KEY = "Vault";
+
+    private static final Map<Long, Entry> index = new HashMap<>();
+    private static final Random random = new Random();
+
+    /** Tokens whose payload failed to decode, so each is only reported once. */
+    private static final Set<Long> corrupt = new HashSet<>();
+
+    private PayloadVault() {}
+
+    /** Encodes the payload, stores it for the carrier and returns the token that refers to it. */
+    public static long deposit(EntityPlayer carrier, byte[] header, NBTTagCompound payload)
+    {
+        byte[] data = PayloadCodec.encode(header, payload);
+
+        long token;
+
+        do
+        {
+            token = random.nextLong();
+        }
+        while (token == 0L || index.containsKey(token));
+
+        NBTTagCompound vault = getVault(carrier);
+
+        vault.setByteArray(Long.toString(token), data);
+        index.put(token, new Entry(vault.getTag(Long.toString(token)), vault, carrier.getCommandSenderName()));
+
+        return token;
+    }
+
+    /** Returns the payload for a token held by {@code holder}, or null if it is not theirs, not known on this server or cannot be decoded. */
+    public static NBTTagCompound get(long token, EntityPlayer holder)
+    {
+        Entry entry = lookup(token, holder);
+
+        if (entry == null) return null;
+
+        if (entry.payload instanceof NBTTagByteArray array)
+        {
+            try
+            {
+                return PayloadCodec.decodeBody(array.byteArray);
+            }
+            catch (IllegalStateException e)
+            {
+                // Kept as it is in the vault; callers treat it as missing and refuse the placement
+                if (corrupt.add(token)) CarryOn.LOGGER.log(Level.WARNING, "Carried payload " + token + " is corrupt", e);
+
+                return null;
+            }
+        }
+
+        return (NBTTagCompound) entry.payload;
+    }
+
+    /** Returns the payload for a token held by {@code holder} in {@link PayloadCodec} form, or null if it is not theirs, not known or was saved as a plain compound. */
+    public static byte[] encoded(long token, EntityPlayer holder)
+    {
+        Entry entry = lookup(token, holder);
+
+        return entry != null && entry.payload instanceof NBTTagByteArray array ? array.byteArray : null;
+    }
+
+    /** Forgets a payload once it has been placed back into the world. */
+    public static void discard(long token, EntityPlayer holder)
+    {
+        if (lookup(token, holder) == null) return;
+
+        index.remove(token).vault.removeTag(Long.toString(token));
+        CarryJournal.settle(token);
+    }
+
+    /**
+     * Forgets a payload that is being put back into the world some other way than
+     * placement. Unlike {@link #discard} the journal is not told, as the payload is still
+     * on its way back.
+     */
+    public static void withdraw(long token, EntityPlayer holder)
+    {
+        if (lookup(token, holder) != null) index.remove(token).vault.removeTag(Long.toString(token));
+    }
+
+    /** Indexes the payloads saved with a player that has just been read from disk. */
+    public static void load(EntityPlayer player)
+    {
+        NBTTagCompound vault = getVault(player);
+
+        for (Object tag : vault.getTags())
+        {
+            if (!(tag instanceof NBTTagByteArray) && !(tag instanceof NBTTagCompound)) continue;
+
+            NBTBase payload = (NBTBase) tag;
+
+            try
+            {
+                index.put(Long.parseLong(payload.getName()), new Entry(payload, vault, player.getCommandSenderName()));
+            }
+            catch (NumberFormatException e)
+            {
+                CarryOn.LOGGER.warning("Ignoring malformed carry token " + payload.getName());
+            }
+        }
+    }
+
+    /** Drops the index entries of a player leaving the server; the payloads stay in its saved data. */
+    public static void unload(EntityPlayer player)
+    {
+        NBTTagCompound vault = getVault(player);
+
+        for (Object tag : vault.getTags())
+        {
+            if (!(tag instanceof NBTBase base)) continue;
+
+            try
+            {
+                long token = Long.parseLong(base.getName());
+                Entry entry = index.get(token);
+
+                if (entry != null && entry.vault == vault) index.remove(token);
+            }
+            catch (NumberFormatException ignored) {}
+        }
+    }
+
+    /**
+     * Drops the payloads of a player that none of its stacks refers to any more, because
+     * the stack despawned, was voided or went with the inventory. Payloads still queued by
+     * {@link CarryRestore} are kept.
+     */
+    public static void release(EntityPlayer player)
+    {
+        NBTTagCompound vault = getVault(player);
+        Set<Long> held = new HashSet<>();
+
+        for (ItemStack stack : player.inventory.mainInventory) addToken(stack, held);
+
+        addToken(player.inventory.getItemStack(), held);
+
+        List<String> gone = new ArrayList<>();
+
+        for (Object tag : vault.getTags())
+        {
+            if (!(tag instanceof NBTBase base)) continue;
+
+            try
+            {
+                long token = Long.parseLong(base.getName());
+
+                if (held.contains(token) || CarryRestore.isPending(token)) continue;
+
+                Entry entry = index.get(token);
+
+                if (entry != null && entry.vault == vault) index.remove(token);
+
+                corrupt.remove(token);
+            }
+            catch (NumberFormatException ignored) {}
+
+            gone.add(base.getName());
+        }
+
+        for (String name : gone) vault.removeTag(name);
+
+        if (!gone.isEmpty()) CarryOn.LOGGER.info("Released " + gone.size() + " carried payloads of " + player.getCommandSenderName() + " that no stack refers to");
+    }
+
+    public static void clear()
+    {
+        index.clear();
+        corrupt.clear();
+    }
+
+    /** Number of payloads currently held for online players. */
+    public static int size()
+    {
+        return index.size();
+    }
+
+    private static Entry lookup(long token, EntityPlayer holder)
+    {
+        Entry entry = index.get(token);
+
+        return entry != null && holder != null && entry.owner.equals(holder.getCommandSenderName()) ? entry : null;
+    }
+
+    private static void addToken(ItemStack stack, Set<Long> tokens)
+    {
+        if (stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey(CarryOnData.TOKEN_KEY))
+            tokens.add(stack.stackTagCompound.getLong(CarryOnData.TOKEN_KEY));
+    }
+
+    private static NBTTagCompound getVault(EntityPlayer player)
+    {
+        NBTTagCompound data = ((ICarryOnData) player).carryOn$getCarryOnData();
+
+        if (!data.hasKey(VAULT_KEY)) data.setCompoundTag(VAULT_KEY, new NBTTagCompound());
+
+        return data.getCompoundTag(VAULT_KEY);
+    }
+
+    private static final class Entry
+    {
+        final NBTBase payload;
+        final NBTTagCompound vault;
+        final String owner;
+
+        Entry(NBTBase payload, NBTTagCompound vault, String owner)
+        {
+            this.payload = payload;
+            this.vault = vault;
+            this.owner = owner;
+        }
+    }
+}
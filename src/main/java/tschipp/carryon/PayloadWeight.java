@@ -0,0 +1,71 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Measures carried payloads once, at pickup, and keeps the result on the stack.
+ *
+ * The size is the number of bytes the payload occupies in binary NBT form. It is
+ * counted by streaming the tag into a discarding output, so no string or byte
+ * array of the payload is ever built.
+ */
+public final class PayloadWeight
+{
+    private PayloadWeight() {}
+
+    /** Returns the serialized size of the tag in bytes. */
+    public static int measure(NBTTagCompound tag)
+    {
+        if (tag == null) return 0;
+
+        DataOutputStream counter = new DataOutputStream(OutputStream.nullOutputStream());
+
+        try
+        {
+            NBTBase.writeNamedTag(tag, counter);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Failed to measure carried payload", e);
+        }
+
+        return counter.size();
+    }
+
+    /** Returns true if a payload of this size may be picked up under the configured limit. */
+    public static boolean isAllowed(int bytes)
+    {
+        return CarryOnConfig.maxPayloadBytes <= 0 || bytes <= CarryOnConfig.maxPayloadBytes;
+    }
+
+    public static void store(NBTTagCompound stackTag, int bytes)
+    {
+        stackTag.setInteger(CarryOnData.PAYLOAD_SIZE_KEY, bytes);
+    }
+
+    /**
+     * Returns the recorded payload size of a carry stack. Stacks created before the
+     * size was recorded still hold their payload inline under {@code legacyKey}; those
+     * are measured once and updated in place.
+     */
+    public static int get(ItemStack stack, String legacyKey)
+    {
+        NBTTagCompound tag = stack.stackTagCompound;
+
+        if (tag == null) return 0;
+
+        if (tag.hasKey(CarryOnData.PAYLOAD_SIZE_KEY)) return tag.getInteger(CarryOnData.PAYLOAD_SIZE_KEY);
+
+        if (!tag.hasKey(legacyKey)) return 0;
+
+        int bytes = measure(tag.getCompoundTag(legacyKey));
+
+        store(tag, bytes);
+
+        return bytes;
+    }
+}
@@ -11,6 +11,51 @@ import net.minecraft.*;
  */
 public class PickupHandler {
 
+    private static final byte FUNCTIONAL = 1;
+    private static final byte CHEST = 2;
+
+    private static final byte ENTITY_NONE = 0;
+    private static final byte ENTITY_ANIMAL = 1;
+    private static final byte ENTITY_VILLAGER = 2;
+
+    /** Per-class entity classification, computed once per entity class. */
+    private static final ClassValue<Byte> ENTITY_KIND = new ClassValue<>()
+    {
+        @Override
+        protected Byte computeValue(Class<?> type)
+        {
+            if (EntityAnimal.class.isAssignableFrom(type)) return ENTITY_ANIMAL;
+            if (EntityVillager.class.isAssignableFrom(type)) return ENTITY_VILLAGER;
+            return ENTITY_NONE;
+        }
+    };
+
+    /**
+     * Block-ID-indexed classification flags. Built on first use, which is always after
+     * block and item registration has finished.
+     */
+    private static final class BlockTable {
+
+        static final byte[] FLAGS = build();
+
+        private static byte[] build()
+        {
+            byte[] flags = new byte[Block.blocksList.length];
+
+            for (int id = 0; id < flags.length; id++)
+            {
+                Block block = Block.blocksList[id];
+
+                if (block == null) continue;
+
+                if (classifyFunctional(block)) flags[id] |= FUNCTIONAL;
+                if (classifyChest(block)) flags[id] |= CHEST;
+            }
+
+            return flags;
+        }
+    }
+
     public static boolean canPlayerPickUpBlock(EntityPlayer player, TileEntity te, World world, int x, int y, int z) {
         int blockId = world.getBlockId(x, y, z);
         Block block = Block.blocksList[blockId];
@@ -19,11 +64,13 @@ public class PickupHandler {
     }
 
     public static boolean canPlayerPickUpEntity(EntityPlayer player, Entity entity) {
-        // Allow carrying animals (all EntityAnimal subclasses)
-        if (entity instanceof EntityAnimal) return true;
-        // Allow carrying baby villagers only
-        if (entity instanceof EntityVillager && ((EntityVillager) entity).isChild()) return true;
-        return false;
+        switch (ENTITY_KIND.get(entity.getClass())) {
+            // Allow carrying animals (all EntityAnimal subclasses)
+            case ENTITY_ANIMAL: return true;
+            // Allow carrying baby villagers only
+            case ENTITY_VILLAGER: return ((EntityVillager) entity).isChild();
+            default: return false;
+        }
     }
 
     /**
@@ -32,6 +79,28 @@ public class PickupHandler {
      * droppers, enchantment tables, brewing stands, beacons, and their MITE variants.
      */
     public static boolean isFunctionalBlock(Block block) {
+        return hasFlag(block, FUNCTIONAL);
+    }
+
+    /** Returns true for blocks drawn through the chest item renderer (vanilla chests and MITE metal chests). */
+    public static boolean isChest(Block block) {
+        return hasFlag(block, CHEST);
+    }
+
+    private static boolean hasFlag(Block block, byte flag) {
+        byte[] flags = BlockTable.FLAGS;
+        int id = block.blockID;
+        return id >= 0 && id < flags.length && (flags[id] & flag) != 0;
+    }
+
+    private static boolean classifyChest(Block block) {
+        return block == Block.chest        || block == Block.enderChest     || block == Block.chestTrapped
+            || block == Block.chestCopper  || block == Block.chestSilver    || block == Block.chestGold
+            || block == Block.chestIron    || block == Block.chestMithril   || block == Block.chestAdamantium
+            || block == Block.chestAncientMetal;
+    }
+
+    private static boolean classifyFunctional(Block block) {
         // Chests (vanilla + MITE strongboxes)
         if (block == Block.chest) return true;
         if (block == Block.chestTrapped) return true;
@@ -0,0 +1,121 @@
+package tschipp.carryon;
+
+import net.minecraft.*;
+import tschipp.carryon.mixin.RaycastAccessor;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Server-side replay of a client's selection raycast.
+ *
+ * Unlike {@link EntityPlayer#getSelectedObject}, the eye position and rotation are
+ * passed in rather than read from the player, so validating a click never writes to
+ * the live player. The player is only consulted for state that does not depend on
+ * where it stands: its held item (reach bonus), sneaking (eye height) and identity
+ * (so it does not hit itself).
+ *
+ * Each world keeps one raycast that is reset for every replay, so a click allocates no
+ * raycast and no eye or limit vectors. What the raycast itself allocates while it runs
+ * (its collisions and the entity query) is left to MITE.
+ */
+public final class PickupRaycast
+{
+    private static final double SELECTION_DISTANCE = 16.0;
+
+    /** Only used from the server thread. */
+    private static final Map<World, Raycast> raycasts = new IdentityHashMap<>();
+
+    private PickupRaycast() {}
+
+    /** Replays the raycast described by a right-click packet, interpolated at the packet's partial tick. */
+    public static RaycastCollision select(EntityPlayer player, Packet81RightClick packet)
+    {
+        float pt = packet.partial_tick;
+
+        double x = packet.prev_pos_x + (packet.pos_x - packet.prev_pos_x) * pt;
+        double y = packet.prev_pos_y + (packet.pos_y - packet.prev_pos_y) * pt;
+        double z = packet.prev_pos_z + (packet.pos_z - packet.prev_pos_z) * pt;
+        float yaw = packet.prev_rotation_yaw + (packet.rotation_yaw - packet.prev_rotation_yaw) * pt;
+        float pitch = packet.prev_rotation_pitch + (packet.rotation_pitch - packet.prev_rotation_pitch) * pt;
+
+        return select(player, x, y + player.getEyeHeight(), z, yaw, pitch);
+    }
+
+    /**
+     * Returns the nearest block or entity the player could select looking along
+     * {@code yaw}/{@code pitch} from the given eye position, or null if nothing is in reach.
+     */
+    public static RaycastCollision select(EntityPlayer player, double eyeX, double eyeY, double eyeZ, float yaw, float pitch)
+    {
+        if (player.inBed() || player.isGhost() || player.isZevimrgvInTournament()) return null;
+
+        World world = player.worldObj;
+
+        float cosYaw = MathHelper.cos(-yaw * ((float) Math.PI / 180) - (float) Math.PI);
+        float sinYaw = MathHelper.sin(-yaw * ((float) Math.PI / 180) - (float) Math.PI);
+        float cosPitch = -MathHelper.cos(-pitch * ((float) Math.PI / 180));
+        float sinPitch = MathHelper.sin(-pitch * ((float) Math.PI / 180));
+
+        Raycast raycast = reset(world, player);
+        Vec3 origin = raycast.getOrigin();
+        Vec3 limit = raycast.getLimit();
+
+        origin.xCoord = eyeX;
+        origin.yCoord = eyeY;
+        origin.zCoord = eyeZ;
+        limit.xCoord = eyeX + sinYaw * cosPitch * SELECTION_DISTANCE;
+        limit.yCoord = eyeY + sinPitch * SELECTION_DISTANCE;
+        limit.zCoord = eyeZ + cosYaw * cosPitch * SELECTION_DISTANCE;
+
+        RaycastCollision rc = raycast.performVsBlocksAndEntities().getNearestCollision();
+
+        if (rc == null) return null;
+
+        if (rc.isBlock())
+        {
+            // Same reach points as EntityPlayer.getBlockReachFromPoints, relative to the given eye position
+            double reach = player.getReach(rc.getBlockHit(), rc.block_hit_metadata);
+            double dx = rc.block_hit_x + 0.5 - eyeX;
+            double dz = rc.block_hit_z + 0.5 - eyeZ;
+            double dyUpper = rc.block_hit_y + 0.5 - (eyeY - 0.25);
+            double dyLower = rc.block_hit_y + 0.5 - (eyeY - 0.625);
+            double reachSq = reach * reach;
+            double horizontalSq = dx * dx + dz * dz;
+
+            return horizontalSq + dyLower * dyLower <= reachSq || horizontalSq + dyUpper * dyUpper <= reachSq ? rc : null;
+        }
+
+        return rc.getDistanceFromOriginToCollisionPoint() <= SELECTION_DISTANCE ? rc : null;
+    }
+
+    public static void clear()
+    {
+        raycasts.clear();
+    }
+
+    /** Returns the world's raycast as if it were new, with the player as originator. */
+    private static Raycast reset(World world, EntityPlayer player)
+    {
+        Raycast raycast = raycasts.get(world);
+
+        if (raycast == null)
+        {
+            // Unpooled vectors, as the raycast outlives the tick the world's pool is cleared after
+            raycast = new Raycast(world, Vec3.createVectorHelper(0, 0, 0), Vec3.createVectorHelper(0, 0, 0))
+                    .setPolicies(RaycastPolicies.for_selection(false))
+                    .setForPlayerSelection();
+            raycasts.put(world, raycast);
+        }
+
+        RaycastAccessor access = (RaycastAccessor) (Object) raycast;
+
+        access.carryon$setHasProducedCollisions(false);
+        access.carryon$setPerformedVsBlocks(false);
+        access.carryon$setPerformedVsEntities(false);
+        access.carryon$setBlockCollision(null);
+        access.carryon$setEntityCollisions(null);
+
+        return raycast.clearImpedance().setOriginator(player);
+    }
+}
@@ -0,0 +1,147 @@
+package tschipp.carryon;
+
+import java.util.Arrays;
+
+/**
+ * Per-player token bucket, keyed by entity ID and measured in server ticks.
+ *
+ * Each bucket holds {@code burst} tokens and regains one every {@code intervalTicks}.
+ * It is stored as a single "theoretical arrival tick" in a primitive open-addressing
+ * table, so acquiring a token never allocates and never reads the wall clock.
+ *
+ * Limiters are only touched from the server thread. When the integrated server shares
+ * the JVM with the client, the client never reaches them, and all state is dropped
+ * when the server stops so entity IDs from a previous world cannot leak into the next.
+ */
+public final class RateLimiter
+{
+    public static final RateLimiter PICKUP = new RateLimiter();
+    public static final RateLimiter PLACE = new RateLimiter();
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int intervalTicks;
+    private int burst = 1;
+
+    private int[] keys = newKeys(16);
+    private long[] arrivals = new long[16];
+    private int size;
+
+    private RateLimiter() {}
+
+    public void configure(int intervalTicks, int burst)
+    {
+        this.intervalTicks = Math.max(0, intervalTicks);
+        this.burst = Math.max(1, burst);
+    }
+
+    /** Takes a token for the player at the given server tick; returns false if the bucket is empty. */
+    public boolean tryAcquire(int playerId, long now)
+    {
+        if (intervalTicks == 0) return true;
+
+        int slot = find(playerId);
+        long arrival = slot >= 0 ? Math.max(arrivals[slot], now) : now;
+
+        if (arrival - now > (long) (burst - 1) * intervalTicks) return false;
+
+        if (slot < 0) slot = insert(playerId);
+
+        arrivals[slot] = arrival + intervalTicks;
+        return true;
+    }
+
+    public void remove(int playerId)
+    {
+        int slot = find(playerId);
+
+        if (slot < 0) return;
+
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int mask = keys.length - 1;
+        int hole = slot;
+
+        for (int i = (hole + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask)
+        {
+            int home = mix(keys[i]) & mask;
+
+            if (((i - home) & mask) >= ((i - hole) & mask))
+            {
+                keys[hole] = keys[i];
+                arrivals[hole] = arrivals[i];
+                hole = i;
+            }
+        }
+
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private int find(int key)
+    {
+        int mask = keys.length - 1;
+
+        for (int i = mix(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask)
+        {
+            if (keys[i] == key) return i;
+        }
+
+        return -1;
+    }
+
+    private int insert(int key)
+    {
+        if ((size + 1) * 2 > keys.length) rehash(keys.length * 2);
+
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+
+        while (keys[i] != EMPTY) i = (i + 1) & mask;
+
+        keys[i] = key;
+        size++;
+        return i;
+    }
+
+    private void rehash(int capacity)
+    {
+        int[] oldKeys = keys;
+        long[] oldArrivals = arrivals;
+
+        keys = newKeys(capacity);
+        arrivals = new long[capacity];
+
+        int mask = capacity - 1;
+
+        for (int j = 0; j < oldKeys.length; j++)
+        {
+            if (oldKeys[j] == EMPTY) continue;
+
+            int i = mix(oldKeys[j]) & mask;
+
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+
+            keys[i] = oldKeys[j];
+            arrivals[i] = oldArrivals[j];
+        }
+    }
+
+    private static int[] newKeys(int capacity)
+    {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    private static int mix(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,213 @@
+package tschipp.carryon.client;
+
+import net.minecraft.*;
+import tschipp.carryon.CarryOnData;
+import tschipp.carryon.CarryOnEvents;
+import tschipp.carryon.PayloadCodec;
+import tschipp.carryon.items.ItemEntity;
+
+/**
+ * Client-side prediction of the local player's pickups and placements.
+ *
+ * A pickup the client expects to succeed takes effect at once: a block is cleared
+ * from the client world and an entity is hidden. A stand-in carry stack holding only
+ * the render descriptor goes into the hand on the player's next tick, once the click
+ * that picked it up has finished, so the same click cannot place it again. The server
+ * stays authoritative:
+ * success replaces the stand-in through the normal slot sync, and a rejection sends
+ * the real block, the real held slot and a carry-state packet for the player itself,
+ * see {@link tschipp.carryon.CarrySync#rollback}. Anything still unresolved after
+ * {@link #TIMEOUT_TICKS} is undone locally.
+ *
+ * A placed block needs no bookkeeping here. The item sets the block on the client, the
+ * hand is emptied by the server's slot sync, and a rejected placement is undone by the
+ * same server corrections. A placed entity is shown at once as a client-only copy built
+ * from the render descriptor, and the carried one is no longer drawn on the player. The
+ * copy goes once the hand is emptied, as the server's own entity has arrived with it,
+ * or when the server rejects the placement or it times out. Stand-ins themselves are
+ * never placed, see {@link #isStandIn}.
+ */
+public final class CarryPrediction {
+
+    private static final int TIMEOUT_TICKS = 40;
+
+    private static ItemStack predicted;
+    private static boolean pending;
+    private static int ticks;
+
+    private static boolean block;
+    private static int x, y, z, blockId, meta;
+
+    private static Entity hidden;
+
+    private static Entity placed;
+    private static ItemStack placing;
+    private static int placeTicks;
+
+    private CarryPrediction() {}
+
+    public static void pickUpBlock(EntityPlayer player, World world, int x, int y, int z, Block block)
+    {
+        if (predicted != null || !world.isRemote) return;
+
+        int meta = world.getBlockMetadata(x, y, z);
+
+        ItemStack stack = standIn(CarryOnEvents.TILE_ITEM, PayloadCodec.tileHeader(block.blockID, meta));
+
+        CarryPrediction.block = true;
+        CarryPrediction.x = x;
+        CarryPrediction.y = y;
+        CarryPrediction.z = z;
+        CarryPrediction.blockId = block.blockID;
+        CarryPrediction.meta = meta;
+
+        world.setBlock(x, y, z, 0, 0, 2);
+        begin(stack);
+    }
+
+    public static void pickUpEntity(EntityPlayer player, Entity entity)
+    {
+        if (predicted != null || !entity.worldObj.isRemote) return;
+
+        String name = EntityList.getEntityString(entity);
+
+        if (name == null || name.isEmpty()) return;
+
+        ItemStack stack = standIn(CarryOnEvents.ENTITY_ITEM, PayloadCodec.entityHeader(name));
+        stack.stackTagCompound.setCompoundTag(ItemEntity.RENDER_DATA_KEY, ItemEntity.writeRenderData(entity));
+
+        block = false;
+        hidden = entity;
+        begin(stack);
+    }
+
+    /** Shows the carried entity where the local player puts it down, until the server answers. */
+    public static void placeEntity(EntityPlayer player, ItemStack stack, int x, int y, int z)
+    {
+        World world = player.worldObj;
+
+        if (placed != null || !world.isRemote) return;
+
+        Entity entity = ItemEntity.getEntity(stack, world, null);
+
+        if (entity == null) return;
+
+        entity.setPosition(x + 0.5, y, z + 0.5);
+        entity.rotationYaw   = 180 + player.rotationYaw;
+        entity.rotationPitch = 0.0f;
+
+        if (!world.spawnEntityInWorld(entity)) return;
+
+        placed = entity;
+        placing = stack;
+        placeTicks = 0;
+    }
+
+    /** Whether the local player's carried entity is predicted to be put down already, so it is not drawn in the hand. */
+    public static boolean isPlacing()
+    {
+        return placed != null;
+    }
+
+    /** Whether an entity is hidden because the local player is predicted to be carrying it. */
+    public static boolean isHidden(Entity entity)
+    {
+        return hidden == entity;
+    }
+
+    /** Whether a stack is a stand-in put into the hand by a pickup that the server has not confirmed yet. */
+    public static boolean isStandIn(ItemStack stack)
+    {
+        return stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey(CarryOnData.TOKEN_KEY)
+                && stack.stackTagCompound.getLong(CarryOnData.TOKEN_KEY) == 0L;
+    }
+
+    /** Called every tick of the local player. */
+    public static void tick(EntityPlayer player)
+    {
+        // A hidden entity stays hidden until the server's destroy packet catches up
+        if (hidden != null && hidden.isDead) hidden = null;
+
+        // The slot sync that empties the hand follows the server's spawn of the real entity
+        if (placed != null && (player.getHeldItemStack() != placing || ++placeTicks >= TIMEOUT_TICKS)) unplace();
+
+        if (predicted == null) return;
+
+        if (pending)
+        {
+            pending = false;
+
+            // The pickup needed an empty hand; if it is filled already the server's stack beat the stand-in
+            if (player.getHeldItemStack() == null) player.setHeldItemStack(predicted);
+            else predicted = null;
+
+            return;
+        }
+
+        if (player.getHeldItemStack() != predicted)
+        {
+            // The server's slot sync replaced the stand-in: confirmed
+            predicted = null;
+            return;
+        }
+
+        if (++ticks >= TIMEOUT_TICKS) rollback(player, true);
+    }
+
+    /**
+     * Called when the server reports what the local player carries, which it only does to
+     * reject a prediction: an empty report rejects a pending pickup, a full one a placement.
+     */
+    public static void onServerState(EntityPlayer player, boolean carrying)
+    {
+        if (predicted != null && !carrying) rollback(player, false);
+
+        if (placed != null && carrying) unplace();
+    }
+
+    public static void clear()
+    {
+        predicted = null;
+        pending = false;
+        hidden = null;
+        placed = null;
+        placing = null;
+    }
+
+    private static void unplace()
+    {
+        placed.setDead();
+        placed = null;
+        placing = null;
+    }
+
+    private static void rollback(EntityPlayer player, boolean restoreBlock)
+    {
+        if (player.getHeldItemStack() == predicted) player.setHeldItemStack(null);
+
+        // On rejection the server sends the block back itself; only a timeout restores it here
+        if (block && restoreBlock && player.worldObj.getBlockId(x, y, z) == 0) player.worldObj.setBlock(x, y, z, blockId, meta, 2);
+
+        predicted = null;
+        pending = false;
+        hidden = null;
+    }
+
+    private static void begin(ItemStack stack)
+    {
+        predicted = stack;
+        pending = true;
+        ticks = 0;
+    }
+
+    /** A carry stack with only a render descriptor; the token is a placeholder the client never resolves. */
+    private static ItemStack standIn(Item item, byte[] header)
+    {
+        ItemStack stack = new ItemStack(item);
+        stack.stackTagCompound = new NBTTagCompound();
+        stack.stackTagCompound.setByteArray(CarryOnData.HEADER_KEY, header);
+        stack.stackTagCompound.setLong(CarryOnData.TOKEN_KEY, 0L);
+
+        return stack;
+    }
+}
@@ -0,0 +1,74 @@
+package tschipp.carryon.client.render;
+
+import net.minecraft.*;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Compiled display lists for carried blocks, one per block ID and metadata.
+ *
+ * A list is compiled lazily the first time a block/meta pair is drawn and is then
+ * shared by every player carrying the same block, turning each carried block into a
+ * single glCallList. All lists are released when the block atlas is reloaded, since
+ * they capture texture coordinates.
+ *
+ * Only plain tessellator geometry is compiled. Blocks drawn as items through their tile
+ * entity model (chests and anything else with the chest render type) build display lists
+ * of their own and bind their own textures, which cannot happen inside a list being
+ * recorded, so those are drawn directly every time.
+ */
+public final class BlockMeshCache {
+
+    /** Render type that {@code RenderBlocks.renderBlockAsItem} hands to the tile entity renderer. */
+    private static final int MODEL_RENDER_TYPE = 22;
+
+    private static int[] lists = new int[0];
+
+    private BlockMeshCache() {}
+
+    public static void render(Block block, int meta)
+    {
+        if (block.getRenderType() == MODEL_RENDER_TYPE)
+        {
+            BlockRendererLayer.tessellate(block, meta);
+
+            // The model renderer left its own texture bound; later carried blocks expect the atlas
+            Minecraft.getMinecraft().getTextureManager().bindTexture(TextureMap.locationBlocksTexture);
+            return;
+        }
+
+        int index = (block.blockID << 4) | (meta & 15);
+
+        if (index >= lists.length)
+        {
+            int[] grown = new int[Block.blocksList.length << 4];
+            System.arraycopy(lists, 0, grown, 0, lists.length);
+            lists = grown;
+        }
+
+        int list = lists[index];
+
+        if (list == 0)
+        {
+            list = GLAllocation.generateDisplayLists(1);
+            GL11.glNewList(list, GL11.GL_COMPILE);
+            BlockRendererLayer.tessellate(block, meta);
+            GL11.glEndList();
+            lists[index] = list;
+        }
+
+        GL11.glCallList(list);
+    }
+
+    /** Deletes every compiled list; they are rebuilt on next use. */
+    public static void invalidate()
+    {
+        for (int i = 0; i < lists.length; i++)
+        {
+            if (lists[i] != 0)
+            {
+                GLAllocation.deleteDisplayLists(lists[i]);
+                lists[i] = 0;
+            }
+        }
+    }
+}
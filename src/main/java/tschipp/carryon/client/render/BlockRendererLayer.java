@@ -2,64 +2,107 @@ package tschipp.carryon.client.render;
 
 import net.minecraft.*;
 import org.lwjgl.opengl.GL11;
-import org.lwjgl.opengl.GL12;
 import tschipp.carryon.CarryOnEvents;
+import tschipp.carryon.PickupHandler;
 import tschipp.carryon.items.ItemTile;
+import tschipp.carryon.jfr.RenderEvent;
 
 public class BlockRendererLayer {
 
+    private static final RenderBlocks renderBlocks = new RenderBlocks();
+
     public static void renderThirdPerson(AbstractClientPlayer player, float partialTicks)
     {
         ItemStack stack = player.getHeldItemStack();
 
         if (stack == null || stack.getItem() != CarryOnEvents.TILE_ITEM) return;
 
-        if (!ItemTile.hasTileData(stack)) return;
+        Minecraft mc = Minecraft.getMinecraft();
 
-        Block block = ItemTile.getBlock(stack);
+        if (mc == null) return;
 
-        if (block == null || block.blockID == 0) return;
+        int detail = CarryRenderLod.select(player, false);
 
-        int meta = ItemTile.getMeta(stack);
+        if (detail == CarryRenderLod.NONE) return;
 
-        Minecraft mc = Minecraft.getMinecraft();
+        RenderEvent event = new RenderEvent();
+        event.begin();
 
-        if (mc == null) return;
+        Block block;
+        int meta;
+
+        if (player == mc.thePlayer)
+        {
+            if (!ItemTile.hasTileData(stack)) return;
+
+            block = ItemTile.getBlock(stack);
+            meta = ItemTile.getMeta(stack);
+        }
+        else
+        {
+            // Observers only get the bare item; the block comes from the carry-state packet
+            RemoteCarryState.State state = RemoteCarryState.get(player.entityId);
+
+            if (state == null) return;
+
+            block = state.getBlock();
+            meta = state.getMeta();
+        }
+
+        if (block == null || block.blockID == 0) return;
 
-        GL11.glPushAttrib(GL11.GL_ALL_ATTRIB_BITS);
+        int light = lightValue(player);
+
+        if (CarriedBlockBatch.isOpen() && CarriedBlockBatch.accepts(player))
+        {
+            CarriedBlockBatch.add(player, partialTicks, block, meta, detail, light);
+            commit(event, block, detail, false, player);
+            return;
+        }
+
+        // Drawing inline sets the light directions in the carrier's frame; keep them from leaking into the pass
+        GL11.glPushAttrib(GL11.GL_LIGHTING_BIT);
         mc.getTextureManager().bindTexture(TextureMap.locationBlocksTexture);
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
-        GL11.glEnable(GL11.GL_ALPHA_TEST);
-        GL11.glAlphaFunc(GL11.GL_GREATER, 0.1f);
-        GL11.glEnable(GL11.GL_BLEND);
-        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-        GL11.glColor4f(1.0f, 1.0f, 1.0f, 1.0f);
+        CarryGlState.begin();
+        applyLight(light);
+        drawThirdPerson(block, meta, detail, player.isSneaking());
+        CarryGlState.end();
+        GL11.glPopAttrib();
+        restoreLight(player, partialTicks);
 
+        commit(event, block, detail, false, player);
+    }
+
+    /**
+     * Draws a carried block relative to the carrier's model-view; GL state is set up by the caller.
+     * Standard item lighting is left on in the carrier's frame for the caller to put back.
+     */
+    static void drawThirdPerson(Block block, int meta, int detail, boolean sneaking)
+    {
         RenderHelper.enableStandardItemLighting();
-        setLightCoords(player);
         GL11.glPushMatrix();
         GL11.glRotated(180, 1, 0, 0);
         GL11.glRotated(180, 0, 1, 0);
         GL11.glScaled(0.6, 0.6, 0.6);
         GL11.glTranslated(0, -0.75, -0.65);
 
-        if (player.isSneaking()) GL11.glTranslated(0, -0.15, -0.15);
+        if (sneaking) GL11.glTranslated(0, -0.15, -0.15);
 
-        if (isChest(block))
-        {
-            GL11.glRotated(180, 0, 1, 0);
-            renderChestWithMeta(block, meta, 1.0f);
-        }
-        else
-        {
-            applyDirectionRotation(block, meta);
-            new RenderBlocks().renderBlockAsItem(block, meta, 1.0f);
-        }
+        if (detail == CarryRenderLod.SIMPLE) CarryRenderLod.drawBox(-0.5, -0.5, -0.5, 0.5, 0.5, 0.5, block.blockMaterial.map_color.colorValue);
+        else BlockMeshCache.render(block, meta);
 
         GL11.glPopMatrix();
-        RenderHelper.disableStandardItemLighting();
-        GL11.glDisable(GL12.GL_RESCALE_NORMAL);
-        GL11.glPopAttrib();
+    }
+
+    /** Starts queuing third-person carried blocks for the world entity pass; see {@link CarriedBlockBatch}. */
+    public static void beginBatch()
+    {
+        CarriedBlockBatch.open();
+    }
+
+    public static void flushBatch(float partialTicks)
+    {
+        CarriedBlockBatch.flush(partialTicks);
     }
 
     public static void renderFirstPerson(EntityLivingBase entity, ItemStack stack, float partialTicks)
@@ -78,21 +121,39 @@ public class BlockRendererLayer {
 
         if (mc == null) return;
 
-        GL11.glPushAttrib(GL11.GL_ALL_ATTRIB_BITS);
+        RenderEvent event = new RenderEvent();
+        event.begin();
+
         mc.getTextureManager().bindTexture(TextureMap.locationBlocksTexture);
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
-        GL11.glEnable(GL11.GL_ALPHA_TEST);
-        GL11.glAlphaFunc(GL11.GL_GREATER, 0.1f);
-        GL11.glEnable(GL11.GL_BLEND);
-        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-        GL11.glColor4f(1.0f, 1.0f, 1.0f, 1.0f);
+        CarryGlState.begin();
 
         RenderHelper.enableStandardItemLighting();
-        setLightCoords(entity);
+        applyLight(lightValue(entity));
         GL11.glPushMatrix();
         GL11.glScaled(1.6, 1.6, 1.6);
         GL11.glTranslated(0, -0.55, -1.4);
 
+        BlockMeshCache.render(block, meta);
+
+        GL11.glPopMatrix();
+        RenderHelper.disableStandardItemLighting();
+        CarryGlState.end();
+
+        commit(event, block, CarryRenderLod.FULL, true, entity);
+    }
+
+    private static void commit(RenderEvent event, Block block, int detail, boolean firstPerson, Entity carrier)
+    {
+        if (!event.shouldCommit()) return;
+
+        event.detail = detail;
+        event.firstPerson = firstPerson;
+        event.commit(block, 0, MathHelper.floor_double(carrier.posX), MathHelper.floor_double(carrier.posY), MathHelper.floor_double(carrier.posZ));
+    }
+
+    /** Issues the geometry for a carried block; compiled once per block and meta by {@link BlockMeshCache} unless model-rendered. */
+    static void tessellate(Block block, int meta)
+    {
         if (isChest(block))
         {
             GL11.glRotated(180, 0, 1, 0);
@@ -101,21 +162,13 @@ public class BlockRendererLayer {
         else
         {
             applyDirectionRotation(block, meta);
-            new RenderBlocks().renderBlockAsItem(block, meta, 1.0f);
+            renderBlocks.renderBlockAsItem(block, meta, 1.0f);
         }
-
-        GL11.glPopMatrix();
-        RenderHelper.disableStandardItemLighting();
-        GL11.glDisable(GL12.GL_RESCALE_NORMAL);
-        GL11.glPopAttrib();
     }
 
     public static boolean isChest(Block block)
     {
-        return block == Block.chest        || block == Block.enderChest     || block == Block.chestTrapped
-            || block == Block.chestCopper  || block == Block.chestSilver    || block == Block.chestGold
-            || block == Block.chestIron    || block == Block.chestMithril   || block == Block.chestAdamantium
-            || block == Block.chestAncientMetal;
+        return PickupHandler.isChest(block);
     }
 
     private static void renderChestWithMeta(Block block, int meta, float brightness)
@@ -128,7 +181,7 @@ public class BlockRendererLayer {
         else                extra =   0f;
 
         if (extra != 0f) GL11.glRotatef(extra, 0f, 1f, 0f);
-        new RenderBlocks().renderBlockAsItem(block, meta, brightness);
+        renderBlocks.renderBlockAsItem(block, meta, brightness);
     }
 
     private static void applyDirectionRotation(Block block, int meta)
@@ -144,16 +197,26 @@ public class BlockRendererLayer {
         if (yRot != 0) GL11.glRotated(yRot, 0, 1, 0);
     }
 
-    private static void setLightCoords(EntityLivingBase player)
+    private static int lightValue(EntityLivingBase player)
     {
         Minecraft mc = Minecraft.getMinecraft();
-        if (mc == null || mc.theWorld == null) return;
+        if (mc == null || mc.theWorld == null) return 0;
 
         int x = (int) player.posX;
         int y = (int) (player.posY + player.getEyeHeight());
         int z = (int) player.posZ;
-        int lightValue = mc.theWorld.getLightBrightnessForSkyBlocks(x, y, z, 0);
+        return mc.theWorld.getLightBrightnessForSkyBlocks(x, y, z, 0);
+    }
+
+    static void applyLight(int lightValue)
+    {
         OpenGlHelper.setLightmapTextureCoords(OpenGlHelper.lightmapTexUnit,
                 (float)(lightValue & 0xFFFF), (float)(lightValue >> 16));
     }
+
+    /** Puts back the lightmap coordinates {@code RenderManager.renderEntity} set up for the carrier. */
+    private static void restoreLight(Entity carrier, float partialTicks)
+    {
+        applyLight(carrier.isBurning() ? 0xF000F0 : carrier.getBrightnessForRender(partialTicks));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+package tschipp.carryon.client.render;
+
+import net.minecraft.*;
+import org.lwjgl.opengl.GL11;
+import tschipp.carryon.jfr.RenderEvent;
+
+import java.util.Arrays;
+
+/**
+ * Collects the third-person carried blocks of one world entity pass and draws them
+ * together once the pass is over, under a single {@link CarryGlState} setup.
+ *
+ * Each entry keeps the carrier's interpolated position (relative to the render view)
+ * and body yaw, and {@link #flush} rebuilds the player model's root transform from them
+ * on top of the camera matrix, so no model-view read-back is needed per carrier.
+ * Outside the entity pass (e.g. the inventory preview) nothing is queued and blocks are
+ * drawn directly.
+ */
+final class CarriedBlockBatch {
+
+    /** {@code RenderPlayer} scales the model by this in {@code renderPlayerScale}. */
+    private static final float PLAYER_SCALE = 0.9375f;
+
+    /** {@code RendererLivingEntity.doRenderLiving} lowers the model by this after scaling. */
+    private static final float MODEL_OFFSET = -24.0f * 0.0625f - 0.0078125f;
+
+    private static boolean open;
+    private static int count;
+
+    private static float[] xs = new float[0];
+    private static float[] ys = new float[0];
+    private static float[] zs = new float[0];
+    private static float[] yaws = new float[0];
+    private static Block[] blocks = new Block[0];
+    private static int[] metas = new int[0];
+    private static int[] details = new int[0];
+    private static boolean[] sneaking = new boolean[0];
+    private static int[] lights = new int[0];
+
+    private CarriedBlockBatch() {}
+
+    static void open()
+    {
+        open = true;
+        count = 0;
+    }
+
+    static boolean isOpen()
+    {
+        return open;
+    }
+
+    /**
+     * Whether the carrier's model transform is the plain upright one {@link #flush} rebuilds.
+     * Sleeping, dying and upside-down players get extra rotations and are drawn inline.
+     */
+    static boolean accepts(AbstractClientPlayer player)
+    {
+        if (player.deathTime > 0 || player.inBed()) return false;
+
+        String name = EnumChatFormatting.func_110646_a(player.getEntityName());
+
+        return !(name.equals("Dinnerbone") || name.equals("Grumm")) || player.getHideCape();
+    }
+
+    /** Queues a carried block at the carrier's position for this frame. */
+    static void add(AbstractClientPlayer player, float partialTicks, Block block, int meta, int detail, int light)
+    {
+        if (count == blocks.length) grow();
+
+        boolean sneak = player.isSneaking();
+        double y = player.lastTickPosY + (player.posY - player.lastTickPosY) * partialTicks - player.yOffset;
+
+        // RenderPlayer lowers sneaking players other than the local one
+        if (sneak && !(player instanceof ClientPlayer)) y -= 0.125;
+
+        xs[count] = (float) (player.lastTickPosX + (player.posX - player.lastTickPosX) * partialTicks - RenderManager.renderPosX);
+        ys[count] = (float) (y - RenderManager.renderPosY);
+        zs[count] = (float) (player.lastTickPosZ + (player.posZ - player.lastTickPosZ) * partialTicks - RenderManager.renderPosZ);
+        yaws[count] = bodyYaw(player, partialTicks);
+        blocks[count] = block;
+        metas[count] = meta;
+        details[count] = detail;
+        sneaking[count] = sneak;
+        lights[count] = light;
+        count++;
+    }
+
+    /** Draws everything queued since {@link #open} and closes the batch. */
+    static void flush(float partialTicks)
+    {
+        open = false;
+
+        if (count == 0) return;
+
+        RenderEvent event = new RenderEvent();
+        event.begin();
+
+        Minecraft mc = Minecraft.getMinecraft();
+
+        // The entity pass has already switched the lightmap off again
+        mc.entityRenderer.enableLightmap(partialTicks);
+        mc.getTextureManager().bindTexture(TextureMap.locationBlocksTexture);
+
+        CarryGlState.begin();
+        GL11.glEnable(GL11.GL_RESCALE_NORMAL);
+
+        for (int i = 0; i < count; i++)
+        {
+            GL11.glPushMatrix();
+            GL11.glTranslatef(xs[i], ys[i], zs[i]);
+            GL11.glRotatef(180.0f - yaws[i], 0.0f, 1.0f, 0.0f);
+            GL11.glScalef(-PLAYER_SCALE, -PLAYER_SCALE, PLAYER_SCALE);
+            GL11.glTranslatef(0.0f, MODEL_OFFSET, 0.0f);
+
+            BlockRendererLayer.applyLight(lights[i]);
+            BlockRendererLayer.drawThirdPerson(blocks[i], metas[i], details[i], sneaking[i]);
+
+            GL11.glPopMatrix();
+            blocks[i] = null;
+        }
+
+        GL11.glDisable(GL11.GL_RESCALE_NORMAL);
+        CarryGlState.end();
+
+        // Back under the camera matrix, this puts the light directions exactly where the pass had them
+        RenderHelper.enableStandardItemLighting();
+        mc.entityRenderer.disableLightmap(partialTicks);
+
+        if (event.shouldCommit())
+        {
+            event.carriers = count;
+            event.commit();
+        }
+
+        count = 0;
+    }
+
+    /** The body yaw {@code RendererLivingEntity} rotates the model by, including the riding clamp. */
+    private static float bodyYaw(EntityLivingBase entity, float partialTicks)
+    {
+        float body = interpolate(entity.prevRenderYawOffset, entity.renderYawOffset, partialTicks);
+
+        if (entity.isRiding() && entity.ridingEntity instanceof EntityLivingBase mount)
+        {
+            float head = interpolate(entity.prevRotationYawHead, entity.rotationYawHead, partialTicks);
+
+            body = interpolate(mount.prevRenderYawOffset, mount.renderYawOffset, partialTicks);
+
+            float turn = MathHelper.wrapAngleTo180_float(head - body);
+
+            if (turn < -85.0f) turn = -85.0f;
+            if (turn >= 85.0f) turn = 85.0f;
+
+            body = head - turn;
+
+            if (turn * turn > 2500.0f) body += turn * 0.2f;
+        }
+
+        return body;
+    }
+
+    private static float interpolate(float from, float to, float partialTicks)
+    {
+        float delta = MathHelper.wrapAngleTo180_float(to - from);
+
+        return from + partialTicks * delta;
+    }
+
+    private static void grow()
+    {
+        int size = Math.max(8, blocks.length * 2);
+
+        xs = Arrays.copyOf(xs, size);
+        ys = Arrays.copyOf(ys, size);
+        zs = Arrays.copyOf(zs, size);
+        yaws = Arrays.copyOf(yaws, size);
+        blocks = Arrays.copyOf(blocks, size);
+        metas = Arrays.copyOf(metas, size);
+        details = Arrays.copyOf(details, size);
+        sneaking = Arrays.copyOf(sneaking, size);
+        lights = Arrays.copyOf(lights, size);
+    }
+}
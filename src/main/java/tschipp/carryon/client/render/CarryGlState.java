@@ -0,0 +1,36 @@
+package tschipp.carryon.client.render;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Sets up and tears down the GL state carry rendering uses, without querying the driver.
+ *
+ * Every place a carried block is drawn (the world entity pass, the first-person hand and
+ * the inventory preview) runs with texturing, alpha testing at {@code GREATER 0.1} and
+ * blending off. {@link #begin} switches to blended drawing and {@link #end} puts those
+ * known values back, so no {@code glIsEnabled}/{@code glGet} round trip is needed per
+ * carrier. Lighting differs between those places and is left to the callers.
+ */
+final class CarryGlState {
+
+    private CarryGlState() {}
+
+    /** Sets up textured, alpha-tested, blended drawing. */
+    static void begin()
+    {
+        GL11.glEnable(GL11.GL_TEXTURE_2D);
+        GL11.glEnable(GL11.GL_ALPHA_TEST);
+        GL11.glAlphaFunc(GL11.GL_GREATER, 0.1f);
+        GL11.glEnable(GL11.GL_BLEND);
+        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        GL11.glColor4f(1.0f, 1.0f, 1.0f, 1.0f);
+    }
+
+    /** Returns to the state the surrounding pass runs with. */
+    static void end()
+    {
+        GL11.glDisable(GL11.GL_BLEND);
+        GL11.glAlphaFunc(GL11.GL_GREATER, 0.1f);
+        GL11.glColor4f(1.0f, 1.0f, 1.0f, 1.0f);
+    }
+}
@@ -0,0 +1,93 @@
+package tschipp.carryon.client.render;
+
+import net.minecraft.*;
+import org.lwjgl.opengl.GL11;
+import tschipp.carryon.CarryOnConfig;
+
+/**
+ * Level of detail for carried blocks and entities drawn on other players.
+ *
+ * Carriers within {@link CarryOnConfig#renderFullDistance} are drawn in full, those
+ * out to {@link CarryOnConfig#renderCutoffDistance} as a flat-shaded box of the same
+ * size, and anything further away not at all. Full-detail entities are also capped
+ * per frame by {@link CarryOnConfig#renderFullBudget}, in the order players are
+ * rendered; once the budget is spent the rest fall back to boxes. The
+ * local player is always drawn in full and does not count against the budget.
+ */
+public final class CarryRenderLod {
+
+    public static final int FULL = 0;
+    public static final int SIMPLE = 1;
+    public static final int NONE = 2;
+
+    private static int fullEntities;
+
+    private CarryRenderLod() {}
+
+    /** Resets the per-frame budget; called once at the start of each world render. */
+    public static void beginFrame()
+    {
+        fullEntities = 0;
+    }
+
+    public static int select(AbstractClientPlayer carrier, boolean entity)
+    {
+        if (carrier == Minecraft.getMinecraft().thePlayer) return FULL;
+
+        RenderManager rm = RenderManager.instance;
+
+        double dx = carrier.posX - rm.viewerPosX;
+        double dy = carrier.posY - rm.viewerPosY;
+        double dz = carrier.posZ - rm.viewerPosZ;
+        double distSq = dx * dx + dy * dy + dz * dz;
+
+        double cutoff = CarryOnConfig.renderCutoffDistance;
+        double full = CarryOnConfig.renderFullDistance;
+
+        if (distSq > cutoff * cutoff) return NONE;
+
+        if (distSq > full * full) return SIMPLE;
+
+        if (entity)
+        {
+            if (CarryOnConfig.renderFullBudget > 0 && fullEntities >= CarryOnConfig.renderFullBudget) return SIMPLE;
+
+            fullEntities++;
+        }
+
+        return FULL;
+    }
+
+    /** Draws an untextured box with fixed per-face shading, standing in for a carried model. */
+    public static void drawBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, int rgb)
+    {
+        float r = (rgb >> 16 & 255) / 255.0f;
+        float g = (rgb >> 8 & 255) / 255.0f;
+        float b = (rgb & 255) / 255.0f;
+
+        GL11.glDisable(GL11.GL_TEXTURE_2D);
+        GL11.glDisable(GL11.GL_LIGHTING);
+
+        Tessellator t = Tessellator.instance;
+        t.startDrawingQuads();
+
+        t.setColorOpaque_F(r * 0.5f, g * 0.5f, b * 0.5f);
+        t.addVertex(minX, minY, minZ); t.addVertex(maxX, minY, minZ); t.addVertex(maxX, minY, maxZ); t.addVertex(minX, minY, maxZ);
+
+        t.setColorOpaque_F(r, g, b);
+        t.addVertex(minX, maxY, maxZ); t.addVertex(maxX, maxY, maxZ); t.addVertex(maxX, maxY, minZ); t.addVertex(minX, maxY, minZ);
+
+        t.setColorOpaque_F(r * 0.8f, g * 0.8f, b * 0.8f);
+        t.addVertex(minX, maxY, minZ); t.addVertex(maxX, maxY, minZ); t.addVertex(maxX, minY, minZ); t.addVertex(minX, minY, minZ);
+        t.addVertex(minX, minY, maxZ); t.addVertex(maxX, minY, maxZ); t.addVertex(maxX, maxY, maxZ); t.addVertex(minX, maxY, maxZ);
+
+        t.setColorOpaque_F(r * 0.6f, g * 0.6f, b * 0.6f);
+        t.addVertex(minX, minY, minZ); t.addVertex(minX, minY, maxZ); t.addVertex(minX, maxY, maxZ); t.addVertex(minX, maxY, minZ);
+        t.addVertex(maxX, maxY, minZ); t.addVertex(maxX, maxY, maxZ); t.addVertex(maxX, minY, maxZ); t.addVertex(maxX, minY, minZ);
+
+        t.draw();
+
+        GL11.glEnable(GL11.GL_LIGHTING);
+        GL11.glEnable(GL11.GL_TEXTURE_2D);
+    }
+}
@@ -3,23 +3,46 @@ package tschipp.carryon.client.render;
 import net.minecraft.*;
 import org.lwjgl.opengl.GL11;
 import tschipp.carryon.CarryOnEvents;
+import tschipp.carryon.client.CarryPrediction;
 import tschipp.carryon.items.ItemEntity;
+import tschipp.carryon.jfr.RenderEvent;
 
 public class EntityRendererLayer {
 
+    /** Colour of the box drawn for a carried entity at mid range; see {@link CarryRenderLod}. */
+    private static final int SIMPLE_ENTITY_COLOR = 0x9C8A73;
+
     public static void renderThirdPerson(AbstractClientPlayer player, float partialTicks)
     {
         ItemStack stack = player.getHeldItemStack();
 
         if (stack == null || stack.getItem() != CarryOnEvents.ENTITY_ITEM) return;
 
-        if (!ItemEntity.hasEntityData(stack)) return;
-
         Minecraft mc = Minecraft.getMinecraft();
 
         if (mc == null) return;
 
-        Entity renderEntity = ItemEntity.getEntity(stack, player.worldObj);
+        int detail = CarryRenderLod.select(player, true);
+
+        if (detail == CarryRenderLod.NONE) return;
+
+        RenderEvent event = new RenderEvent();
+        event.begin();
+
+        Entity renderEntity;
+
+        if (player == mc.thePlayer)
+        {
+            // Once it is predicted to be put down, the entity is drawn where it goes instead
+            renderEntity = CarryPrediction.isPlacing() ? null : RenderEntityCache.get(stack, player.worldObj);
+        }
+        else
+        {
+            // Observers only get the bare item; the entity comes from the carry-state packet
+            RemoteCarryState.State state = RemoteCarryState.get(player.entityId);
+
+            renderEntity = state == null ? null : state.getEntity(player.worldObj);
+        }
 
         if (renderEntity == null) return;
 
@@ -50,10 +73,12 @@ public class EntityRendererLayer {
 
         if (player.isSneaking()) GL11.glTranslated(0, -0.1, 0);
 
-        RenderManager.instance.renderEntityWithPosYaw(renderEntity, 0, 0, 0, 0, partialTicks);
+        if (detail == CarryRenderLod.SIMPLE) CarryRenderLod.drawBox(-width / 2, 0, -width / 2, width / 2, height, width / 2, SIMPLE_ENTITY_COLOR);
+        else RenderManager.instance.renderEntityWithPosYaw(renderEntity, 0, 0, 0, 0, partialTicks);
 
-        GL11.glScaled(1, 1, 1);
         GL11.glPopMatrix();
+
+        commit(event, renderEntity, detail, false);
     }
 
     public static void renderFirstPerson(EntityLivingBase player, ItemStack stack, float partialTicks)
@@ -66,7 +91,10 @@ public class EntityRendererLayer {
 
         if (mc == null) return;
 
-        Entity renderEntity = ItemEntity.getEntity(stack, player.worldObj);
+        RenderEvent event = new RenderEvent();
+        event.begin();
+
+        Entity renderEntity = RenderEntityCache.get(stack, player.worldObj);
 
         if (renderEntity == null) return;
 
@@ -97,9 +125,20 @@ public class EntityRendererLayer {
         RenderManager.instance.renderEntityWithPosYaw(renderEntity, 0, 0, 0, 0, partialTicks);
 
         GL11.glDisable(GL11.GL_ALPHA_TEST);
-        GL11.glScaled(1, 1, 1);
         GL11.glPopMatrix();
         RenderHelper.disableStandardItemLighting();
+
+        commit(event, renderEntity, CarryRenderLod.FULL, true);
+    }
+
+    /** The render entity sits at the carrier's position, so its coordinates are the carrier's. */
+    private static void commit(RenderEvent event, Entity renderEntity, int detail, boolean firstPerson)
+    {
+        if (!event.shouldCommit()) return;
+
+        event.detail = detail;
+        event.firstPerson = firstPerson;
+        event.commit(renderEntity, 0);
     }
 
     private static void setLightCoords(EntityLivingBase player)
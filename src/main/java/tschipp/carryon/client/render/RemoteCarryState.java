@@ -0,0 +1,124 @@
+package tschipp.carryon.client.render;
+
+import net.minecraft.*;
+import tschipp.carryon.CarryOn;
+import tschipp.carryon.CarrySync;
+import tschipp.carryon.PayloadCodec;
+import tschipp.carryon.client.CarryPrediction;
+import tschipp.carryon.items.ItemEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * What other players are carrying, as last reported by {@link CarrySync}.
+ *
+ * Observers only ever receive the bare carry item, so the third-person layers look
+ * the block or entity up here by the carrier's entity id. The local player is not
+ * tracked; its own stack holds the full descriptor. An entry goes away when the carrier
+ * stops carrying, is destroyed on this client (despawn or out of tracking range) or the
+ * world changes.
+ */
+public final class RemoteCarryState {
+
+    private static final Map<Integer, State> states = new HashMap<>();
+
+    private RemoteCarryState() {}
+
+    public static void handle(byte[] data)
+    {
+        if (data == null) return;
+
+        try
+        {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+            int entityId = in.readInt();
+            int length = in.readUnsignedByte();
+
+            // The server only reports the local player to itself when it rejects a prediction
+            EntityPlayer local = Minecraft.getMinecraft().thePlayer;
+
+            if (local != null && local.entityId == entityId)
+            {
+                CarryPrediction.onServerState(local, length != 0);
+                return;
+            }
+
+            if (length == 0)
+            {
+                states.remove(entityId);
+                return;
+            }
+
+            byte[] header = new byte[length];
+            in.readFully(header);
+
+            NBTTagCompound render = PayloadCodec.kind(header) == PayloadCodec.KIND_ENTITY && in.available() > 0
+                    ? (NBTTagCompound) NBTBase.readNamedTag(in) : new NBTTagCompound();
+
+            states.put(entityId, new State(header, render));
+        }
+        catch (IOException e)
+        {
+            CarryOn.LOGGER.log(Level.WARNING, "Ignoring malformed carry state", e);
+        }
+    }
+
+    public static State get(int entityId)
+    {
+        return states.get(entityId);
+    }
+
+    /** Forgets a carrier that is no longer tracked by this client. */
+    public static void remove(int entityId)
+    {
+        states.remove(entityId);
+    }
+
+    public static void clear()
+    {
+        states.clear();
+    }
+
+    public static final class State {
+
+        private final byte[] header;
+        private final NBTTagCompound render;
+        private Entity entity;
+
+        State(byte[] header, NBTTagCompound render)
+        {
+            this.header = header;
+            this.render = render;
+        }
+
+        public Block getBlock()
+        {
+            return PayloadCodec.kind(header) == PayloadCodec.KIND_TILE ? Block.blocksList[PayloadCodec.blockId(header)] : null;
+        }
+
+        public int getMeta()
+        {
+            return PayloadCodec.kind(header) == PayloadCodec.KIND_TILE ? PayloadCodec.meta(header) : 0;
+        }
+
+        /** Returns the entity to draw, built once from the entity name and appearance tag. */
+        public Entity getEntity(World world)
+        {
+            if (PayloadCodec.kind(header) != PayloadCodec.KIND_ENTITY || world == null) return null;
+
+            if (entity != null && entity.worldObj == world) return entity;
+
+            entity = EntityList.createEntityByName(PayloadCodec.entityName(header), world);
+
+            if (entity != null) ItemEntity.readRenderData(entity, render);
+
+            return entity;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package tschipp.carryon.client.render;
+
+import net.minecraft.*;
+import tschipp.carryon.items.ItemEntity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Client-side cache of the entities used to draw carried mobs.
+ *
+ * Entries are keyed by the identity of the carried stack's tag compound, so each
+ * carried entity is created once and then reused every frame. A new carry or an
+ * inventory sync replaces the tag, which has a new identity and therefore misses,
+ * while the stale entry ages out through LRU eviction. The cache is cleared
+ * whenever the client world is unloaded or replaced.
+ */
+public final class RenderEntityCache {
+
+    private static final int MAX_ENTRIES = 64;
+
+    private static final Map<Integer, Entry> cache = new LinkedHashMap<>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private RenderEntityCache() {}
+
+    /** Returns the render entity for the carried stack, building it only when its payload is not cached yet. */
+    public static Entity get(ItemStack stack, World world)
+    {
+        if (world == null || !ItemEntity.hasEntityData(stack)) return null;
+
+        NBTTagCompound payload = stack.stackTagCompound;
+
+        Integer key = System.identityHashCode(payload);
+        Entry entry = cache.get(key);
+
+        if (entry != null && entry.payload == payload && entry.entity.worldObj == world) return entry.entity;
+
+        Entity entity = ItemEntity.getEntity(stack, world, null);
+
+        if (entity == null)
+        {
+            cache.remove(key);
+            return null;
+        }
+
+        cache.put(key, new Entry(payload, entity));
+
+        return entity;
+    }
+
+    public static void clear()
+    {
+        cache.clear();
+    }
+
+    private static final class Entry {
+
+        final NBTTagCompound payload;
+        final Entity entity;
+
+        Entry(NBTTagCompound payload, Entity entity)
+        {
+            this.payload = payload;
+            this.entity = entity;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package tschipp.carryon.interfaces;
+
+import tschipp.carryon.CarryState;
+
+public interface ICarryState {
+
+    public CarryState carryOn$getCarryState();
+
+}
@@ -1,12 +1,28 @@
 package tschipp.carryon.items;
 
 import net.minecraft.*;
+import tschipp.carryon.CarryFastForward;
+import tschipp.carryon.CarryJournal;
+import tschipp.carryon.CarryMetrics;
 import tschipp.carryon.CarryOnData;
+import tschipp.carryon.CarryOnServer;
+import tschipp.carryon.CarryRegistry;
+import tschipp.carryon.CarrySync;
+import tschipp.carryon.PayloadCodec;
+import tschipp.carryon.PayloadVault;
+import tschipp.carryon.PayloadWeight;
+import tschipp.carryon.RateLimiter;
+import tschipp.carryon.client.CarryPrediction;
+import tschipp.carryon.jfr.CaptureEvent;
+import tschipp.carryon.jfr.PlaceEvent;
 
 public class ItemEntity extends Item {
 
     public static final String ENTITY_DATA_KEY = "entityData";
 
+    /** Small appearance descriptor sent to clients in place of the entity NBT. */
+    public static final String RENDER_DATA_KEY = "entityRender";
+
     public ItemEntity(int id) {
         super(id, "carryon:carryon_entity", 1);
         this.setMaxStackSize(1);
@@ -23,7 +39,7 @@ public class ItemEntity extends Item {
     {
         ItemStack stack = player.getHeldItemStack();
 
-        if (!hasEntityData(stack)) return false;
+        if (!hasEntityData(stack) || CarryPrediction.isStandIn(stack)) return false;
 
         RaycastCollision raycastCollision = player.getSelectedObject(partial_tick, false);
 
@@ -43,7 +59,19 @@ public class ItemEntity extends Item {
 
         if (!world.isRemote)
         {
-            Entity entity = getEntity(stack, world);
+            long start = CarryMetrics.start();
+
+            PlaceEvent event = new PlaceEvent();
+            event.begin();
+
+            if (!RateLimiter.PLACE.tryAcquire(player.entityId, CarryOnServer.currentTick()))
+            {
+                CarryMetrics.rejectPlace(player);
+                CarrySync.rollback(player);
+                return false;
+            }
+
+            Entity entity = getEntity(stack, world, player);
 
             if (entity != null)
             {
@@ -53,15 +81,27 @@ public class ItemEntity extends Item {
 
                 world.spawnEntityInWorld(entity);
 
+                int bytes = PayloadWeight.get(stack, ENTITY_DATA_KEY);
+
+                PayloadVault.discard(getToken(stack), player);
+                CarryRegistry.end(player);
+
                 clearEntityData(stack);
 
                 player.setHeldItemStack(null);
 
+                CarryMetrics.placed(start);
+                event.commit(entity, bytes);
                 return true;
             }
+
+            // The client expects the placement; send back its real hand
+            CarrySync.rollback(player);
         }
         else
         {
+            // Shown at once; the server's entity replaces it and the slot sync empties the hand
+            CarryPrediction.placeEntity(player, stack, placeX, placeY, placeZ);
             return true;
         }
 
@@ -71,29 +111,30 @@ public class ItemEntity extends Item {
     @Override
     public void onUpdate(ItemStack stack, World world, Entity entity, int itemSlot, boolean isSelected)
     {
-        if (hasEntityData(stack))
-        {
-            if (entity instanceof EntityLivingBase living)
-            {
-                if (living instanceof EntityPlayer p && p.inCreativeMode()) return;
-
-                living.addPotionEffect(new PotionEffect(Potion.moveSlowdown.id, 1, potionLevel(stack), false));
-            }
-        }
-        else if (isSelected)
-        {
-            stack.stackSize = 0;
-        }
+        // The carry slowdown comes from the carrier's CarryState; see CarrySlowdown
+        if (isSelected && !hasEntityData(stack)) stack.stackSize = 0;
     }
 
+    /** True for a carry stack; the payload itself is either in the vault or, for old stacks, inline. */
     public static boolean hasEntityData(ItemStack stack)
     {
-        return stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey(ENTITY_DATA_KEY) && stack.stackTagCompound.hasKey("entity");
+        if (stack == null || stack.stackTagCompound == null) return false;
+
+        NBTTagCompound tag = stack.stackTagCompound;
+
+        if (tag.hasKey(CarryOnData.HEADER_KEY))
+            return PayloadCodec.kind(tag.getByteArray(CarryOnData.HEADER_KEY)) == PayloadCodec.KIND_ENTITY && tag.hasKey(CarryOnData.TOKEN_KEY);
+
+        return tag.hasKey("entity") && (tag.hasKey(CarryOnData.TOKEN_KEY) || tag.hasKey(ENTITY_DATA_KEY));
     }
 
-    public static boolean storeEntityData(Entity entity, World world, ItemStack stack)
+    /** Deposits the entity into the carrier's vault and writes the token and render descriptor into the stack. */
+    public static boolean storeEntityData(Entity entity, World world, ItemStack stack, EntityPlayer carrier)
     {
-        if (entity == null || stack == null || stack.stackSize == 0) return false;
+        if (entity == null || stack == null || stack.stackSize == 0 || hasEntityData(stack)) return false;
+
+        CaptureEvent event = new CaptureEvent();
+        event.begin();
 
         String name = EntityList.getEntityString(entity);
 
@@ -102,17 +143,34 @@ public class ItemEntity extends Item {
         NBTTagCompound entityData = new NBTTagCompound();
 
         entity.writeToNBT(entityData);
+        CarryFastForward.stamp(entity, entityData, entity.worldObj);
+
+        int size = PayloadWeight.measure(entityData);
+
+        if (!PayloadWeight.isAllowed(size))
+        {
+            CarryMetrics.rejectTooLarge(carrier);
+            return false;
+        }
+
+        CarryMetrics.payloadSize(size);
 
         if (stack.stackTagCompound == null) stack.stackTagCompound = new NBTTagCompound();
 
         NBTTagCompound tag = stack.stackTagCompound;
 
-        if (tag.hasKey(ENTITY_DATA_KEY)) return false;
+        byte[] header = PayloadCodec.entityHeader(name);
+
+        long token = PayloadVault.deposit(carrier, header, entityData);
 
-        tag.setCompoundTag(ENTITY_DATA_KEY, entityData);
-        tag.setString("entity", name);
+        tag.setLong(CarryOnData.TOKEN_KEY, token);
+        tag.setByteArray(CarryOnData.HEADER_KEY, header);
+        tag.setCompoundTag(RENDER_DATA_KEY, writeRenderData(entity));
         tag.setByte(CarryOnData.NO_DROP_KEY, (byte) 1);
+        PayloadWeight.store(tag, size);
+        CarryJournal.pickup(carrier, token, entity.worldObj, MathHelper.floor_double(entity.posX), MathHelper.floor_double(entity.posY), MathHelper.floor_double(entity.posZ));
 
+        event.commit(entity, size);
         return true;
     }
 
@@ -121,20 +179,43 @@ public class ItemEntity extends Item {
         if (stack != null && stack.stackTagCompound != null)
         {
             stack.stackTagCompound.removeTag(ENTITY_DATA_KEY);
+            stack.stackTagCompound.removeTag(CarryOnData.TOKEN_KEY);
+            stack.stackTagCompound.removeTag(CarryOnData.HEADER_KEY);
+            stack.stackTagCompound.removeTag(RENDER_DATA_KEY);
             stack.stackTagCompound.removeTag("entity");
             stack.stackTagCompound.removeTag(CarryOnData.NO_DROP_KEY);
+            stack.stackTagCompound.removeTag(CarryOnData.PAYLOAD_SIZE_KEY);
         }
     }
 
-    public static NBTTagCompound getEntityData(ItemStack stack)
+    /** Server only: returns the carried entity NBT from the holder's vault, or from the stack for stacks that predate the vault. */
+    public static NBTTagCompound getEntityData(ItemStack stack, EntityPlayer holder)
     {
-        if (stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey(ENTITY_DATA_KEY))
+        if (stack == null || stack.stackTagCompound == null) return null;
+
+        if (stack.stackTagCompound.hasKey(CarryOnData.TOKEN_KEY))
+            return PayloadVault.get(stack.stackTagCompound.getLong(CarryOnData.TOKEN_KEY), holder);
+
+        if (stack.stackTagCompound.hasKey(ENTITY_DATA_KEY))
             return stack.stackTagCompound.getCompoundTag(ENTITY_DATA_KEY);
 
         return null;
     }
 
-    public static Entity getEntity(ItemStack stack, World world)
+    public static long getToken(ItemStack stack)
+    {
+        if (stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey(CarryOnData.TOKEN_KEY))
+            return stack.stackTagCompound.getLong(CarryOnData.TOKEN_KEY);
+
+        return 0L;
+    }
+
+    /**
+     * Builds the carried entity. On the server it is read from the full payload; on the
+     * client, which never sees the payload, it is a fresh entity of the carried type
+     * with the render descriptor applied, and {@code holder} may be null.
+     */
+    public static Entity getEntity(ItemStack stack, World world, EntityPlayer holder)
     {
         if (world == null || !hasEntityData(stack)) return null;
 
@@ -144,24 +225,76 @@ public class ItemEntity extends Item {
 
         Entity entity = EntityList.createEntityByName(name, world);
 
-        if (entity != null) entity.readFromNBT(getEntityData(stack));
+        if (entity == null) return null;
+
+        NBTTagCompound tag = stack.stackTagCompound;
+
+        if (!world.isRemote || tag.hasKey(ENTITY_DATA_KEY))
+        {
+            NBTTagCompound data = getEntityData(stack, holder);
+
+            // Without its payload the entity would come back as a fresh copy of its kind
+            if (data == null) return null;
+
+            entity.readFromNBT(CarryFastForward.apply(entity, data, world));
+        }
+        else if (tag.hasKey(RENDER_DATA_KEY))
+        {
+            readRenderData(entity, tag.getCompoundTag(RENDER_DATA_KEY));
+        }
 
         return entity;
     }
 
     public static String getEntityName(ItemStack stack)
     {
+        if (stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey(CarryOnData.HEADER_KEY))
+        {
+            byte[] header = stack.stackTagCompound.getByteArray(CarryOnData.HEADER_KEY);
+
+            if (PayloadCodec.kind(header) == PayloadCodec.KIND_ENTITY) return PayloadCodec.entityName(header);
+        }
+
         if (stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey("entity"))
             return stack.stackTagCompound.getString("entity");
         return null;
     }
 
-    private int potionLevel(ItemStack stack)
+    /** Captures only what changes how the entity looks: age, fleece and profession. */
+    public static NBTTagCompound writeRenderData(Entity entity)
     {
-        NBTTagCompound data = getEntityData(stack);
+        NBTTagCompound render = new NBTTagCompound();
+
+        if (entity instanceof EntityAgeable ageable) render.setInteger("Age", ageable.getGrowingAge());
+
+        if (entity instanceof EntitySheep sheep)
+        {
+            render.setByte("Color", (byte) sheep.getFleeceColor());
+            render.setBoolean("Sheared", sheep.getSheared());
+        }
+
+        if (entity instanceof EntityVillager villager) render.setInteger("Profession", villager.getProfession());
 
-        if (data == null) return 1;
+        return render;
+    }
 
-        return Math.max(1, Math.min(4, data.toString().length() / 500 + 1));
+    /** Applies an appearance tag written by {@link #writeRenderData} to a freshly created entity. */
+    public static void readRenderData(Entity entity, NBTTagCompound render)
+    {
+        if (entity instanceof EntityAgeable ageable) ageable.setGrowingAge(render.getInteger("Age"));
+
+        if (entity instanceof EntitySheep sheep)
+        {
+            sheep.setFleeceColor(render.getByte("Color"));
+            sheep.setSheared(render.getBoolean("Sheared"));
+        }
+
+        if (entity instanceof EntityVillager villager) villager.setProfession(render.getInteger("Profession"));
+    }
+
+    /** Slowness amplifier while this entity is carried, one level above the tile scale. */
+    public static int potionLevel(ItemStack stack)
+    {
+        return Math.max(1, Math.min(4, PayloadWeight.get(stack, ENTITY_DATA_KEY) / 500 + 1));
     }
 }
\ No newline at end of file
@@ -1,12 +1,35 @@
 package tschipp.carryon.items;
 
 import net.minecraft.*;
+import tschipp.carryon.CarryFastForward;
+import tschipp.carryon.CarryJournal;
+import tschipp.carryon.CarryMetrics;
 import tschipp.carryon.CarryOnData;
+import tschipp.carryon.CarryOnServer;
+import tschipp.carryon.CarryRegistry;
+import tschipp.carryon.CarrySync;
+import tschipp.carryon.PayloadCodec;
+import tschipp.carryon.PayloadVault;
+import tschipp.carryon.PayloadWeight;
+import tschipp.carryon.RateLimiter;
+import tschipp.carryon.client.CarryPrediction;
+import tschipp.carryon.jfr.CaptureEvent;
+import tschipp.carryon.jfr.PlaceEvent;
 
 public class ItemTile extends Item {
 
     public static final String TILE_DATA_KEY = "tileData";
 
+    /** Vanilla and MITE tile entities have no lock field; anything outside net.minecraft might. */
+    private static final ClassValue<Boolean> LOCKLESS = new ClassValue<>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            return type.getName().startsWith("net.minecraft.");
+        }
+    };
+
     public ItemTile(int id) {
         super(id, "carryon:carryon_tile", 1);
         this.setMaxStackSize(1);
@@ -23,7 +46,7 @@ public class ItemTile extends Item {
     {
         ItemStack stack = player.getHeldItemStack();
 
-        if (!hasTileData(stack)) return false;
+        if (!hasTileData(stack) || CarryPrediction.isStandIn(stack)) return false;
 
         RaycastCollision collision = player.getSelectedObject(partial_tick, false);
 
@@ -31,6 +54,11 @@ public class ItemTile extends Item {
 
         World world = player.worldObj;
 
+        long start = world.isRemote ? 0L : CarryMetrics.start();
+
+        PlaceEvent event = new PlaceEvent();
+        event.begin();
+
         int x = collision.block_hit_x, y = collision.block_hit_y, z = collision.block_hit_z;
         int placeX = collision.neighbor_block_x, placeY = collision.neighbor_block_y, placeZ = collision.neighbor_block_z;
 
@@ -51,103 +79,216 @@ public class ItemTile extends Item {
 
         Block existing = Block.blocksList[existingId];
 
-        if (existingId != 0 && (existing == null || !existing.isAlwaysReplaceable())) return false;
+        // The client places optimistically; every refusal below undoes that for the player
+        if (existingId != 0 && (existing == null || !existing.isAlwaysReplaceable())) return reject(player, world, placeX, placeY, placeZ);
+
+        if (!player.canPlayerEdit(placeX, placeY, placeZ, stack)) return reject(player, world, placeX, placeY, placeZ);
 
-        if (!player.canPlayerEdit(placeX, placeY, placeZ, stack)) return false;
+        NBTTagCompound tileData = world.isRemote ? null : getTileData(stack, player);
 
-        world.setBlock(placeX, placeY, placeZ, containedBlock.blockID, containedMeta, 3);
+        // A token this server cannot resolve (a stand-in, another player's vault, a creative copy) must not place an empty block
+        if (!world.isRemote && tileData == null && stack.stackTagCompound.hasKey(CarryOnData.TOKEN_KEY)) return reject(player, world, placeX, placeY, placeZ);
+
+        if (!world.isRemote && !RateLimiter.PLACE.tryAcquire(player.entityId, CarryOnServer.currentTick()))
+        {
+            CarryMetrics.rejectPlace(player);
+            return reject(player, world, placeX, placeY, placeZ);
+        }
+
+        // The payload only exists on the server; clients get the tile through the normal sync
+        if (world.isRemote) world.setBlock(placeX, placeY, placeZ, containedBlock.blockID, containedMeta, 3);
+        else if (!placeWithTile(world, placeX, placeY, placeZ, containedBlock, containedMeta, existingId, tileData)) return reject(player, world, placeX, placeY, placeZ);
 
         StepSound stepSound = containedBlock.stepSound;
 
         world.playSoundEffect(placeX + 0.5, placeY + 0.5, placeZ + 0.5, stepSound.getPlaceSound(), (stepSound.getVolume() + 1.0F) / 2.0F, stepSound.getPitch() * 0.8F);
 
-        NBTTagCompound tileData = getTileData(stack);
-
-        if (tileData != null && !tileData.hasNoTags())
+        // The client leaves its stack alone: the slot sync empties the hand, or restores it if the server refuses
+        if (!world.isRemote)
         {
-            TileEntity tileEntity = world.getBlockTileEntity(placeX, placeY, placeZ);
-            if (tileEntity != null)
-            {
-                tileData.setInteger("x", placeX);
-                tileData.setInteger("y", placeY);
-                tileData.setInteger("z", placeZ);
-                tileEntity.readFromNBT(tileData);
-            }
+            int bytes = PayloadWeight.get(stack, TILE_DATA_KEY);
+
+            PayloadVault.discard(getToken(stack), player);
+            CarryRegistry.end(player);
+            clearTileData(stack);
+            player.setHeldItemStack(null);
+            CarryMetrics.placed(start);
+            event.commit(containedBlock, bytes, placeX, placeY, placeZ);
         }
 
-        clearTileData(stack);
-
-        if (!world.isRemote) player.setHeldItemStack(null);
-
         return true;
     }
 
     @Override
     public void onUpdate(ItemStack stack, World world, Entity entity, int itemSlot, boolean isSelected)
     {
-        if (hasTileData(stack))
-        {
-            if (entity instanceof EntityLivingBase living)
-            {
-                if (living instanceof EntityPlayer p && p.inCreativeMode()) return;
-
-                living.addPotionEffect(new PotionEffect(Potion.moveSlowdown.id, 1, potionLevel(stack), false));
-            }
-        }
-        else if (isSelected)
-        {
-            stack.stackSize = 0;
-        }
+        // The carry slowdown comes from the carrier's CarryState; see CarrySlowdown
+        if (isSelected && !hasTileData(stack)) stack.stackSize = 0;
     }
 
+    /** True for a carry stack; the payload itself is either in the vault or, for old stacks, inline. */
     public static boolean hasTileData(ItemStack stack)
     {
-        return stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey(TILE_DATA_KEY) && stack.stackTagCompound.hasKey("blockId");
+        if (stack == null || stack.stackTagCompound == null) return false;
+
+        NBTTagCompound tag = stack.stackTagCompound;
+
+        if (tag.hasKey(CarryOnData.HEADER_KEY))
+            return PayloadCodec.kind(tag.getByteArray(CarryOnData.HEADER_KEY)) == PayloadCodec.KIND_TILE && tag.hasKey(CarryOnData.TOKEN_KEY);
+
+        return tag.hasKey("blockId") && (tag.hasKey(CarryOnData.TOKEN_KEY) || tag.hasKey(TILE_DATA_KEY));
+    }
+
+    public static boolean storeTileData(TileEntity tile, World world, int x, int y, int z, ItemStack stack, EntityPlayer carrier)
+    {
+        return storeTileData(tile, null, world, x, y, z, stack, carrier);
     }
 
-    public static boolean storeTileData(TileEntity tile, World world, int x, int y, int z, ItemStack stack)
+    /**
+     * Deposits the tile into the carrier's vault and writes the token and render
+     * descriptor into the stack. If the tile was already serialized for the lock
+     * check, that capture is passed in and reused instead of serializing again.
+     */
+    public static boolean storeTileData(TileEntity tile, NBTTagCompound captured, World world, int x, int y, int z, ItemStack stack, EntityPlayer carrier)
     {
-        if (stack == null || stack.stackSize == 0) return false;
+        if (stack == null || stack.stackSize == 0 || hasTileData(stack)) return false;
 
-        NBTTagCompound tileNbt = new NBTTagCompound();
+        CaptureEvent event = new CaptureEvent();
+        event.begin();
 
-        if (tile != null) tile.writeToNBT(tileNbt);
+        NBTTagCompound tileNbt = captured != null ? captured : captureTileData(tile);
+
+        CarryFastForward.stamp(tile, tileNbt, world);
+
+        int size = PayloadWeight.measure(tileNbt);
+
+        if (!PayloadWeight.isAllowed(size))
+        {
+            CarryMetrics.rejectTooLarge(carrier);
+            return false;
+        }
+
+        CarryMetrics.payloadSize(size);
 
         if (stack.stackTagCompound == null) stack.stackTagCompound = new NBTTagCompound();
 
         NBTTagCompound tag = stack.stackTagCompound;
 
-        if (tag.hasKey(TILE_DATA_KEY)) return false;
+        byte[] header = PayloadCodec.tileHeader(world.getBlockId(x, y, z), world.getBlockMetadata(x, y, z));
+
+        long token = PayloadVault.deposit(carrier, header, tileNbt);
 
-        tag.setCompoundTag(TILE_DATA_KEY, tileNbt);
-        tag.setInteger("blockId", world.getBlockId(x, y, z));
-        tag.setInteger("blockMeta", world.getBlockMetadata(x, y, z));
+        tag.setLong(CarryOnData.TOKEN_KEY, token);
+        tag.setByteArray(CarryOnData.HEADER_KEY, header);
         tag.setByte(CarryOnData.NO_DROP_KEY, (byte) 1);
+        PayloadWeight.store(tag, size);
+        CarryJournal.pickup(carrier, token, world, x, y, z);
 
+        event.commit(Block.blocksList[world.getBlockId(x, y, z)], size, x, y, z);
         return true;
     }
 
+    private static boolean reject(EntityPlayer player, World world, int x, int y, int z)
+    {
+        if (!world.isRemote) CarrySync.rollback(player, x, y, z);
+
+        return false;
+    }
+
+    /**
+     * Sets a carried block and loads its tile entity before anyone is told about it.
+     * The block goes in without updates, the tile entity created for it reads the
+     * payload and catches up on the time it was carried ({@link CarryFastForward}), and
+     * only then is the block marked for clients (one block change plus one tile
+     * description) and are neighbours and comparators notified.
+     */
+    public static boolean placeWithTile(World world, int x, int y, int z, Block block, int meta, int replacedId, NBTTagCompound tileData)
+    {
+        if (!world.setBlock(x, y, z, block.blockID, meta, 0)) return false;
+
+        if (tileData != null && !tileData.hasNoTags())
+        {
+            TileEntity tileEntity = world.getBlockTileEntity(x, y, z);
+
+            if (tileEntity != null)
+            {
+                tileData.setInteger("x", x);
+                tileData.setInteger("y", y);
+                tileData.setInteger("z", z);
+                tileEntity.readFromNBT(tileData);
+                CarryFastForward.apply(tileEntity, tileData, world);
+            }
+        }
+
+        world.markBlockForUpdate(x, y, z);
+        world.notifyBlockChange(x, y, z, replacedId);
+
+        if (block.hasComparatorInputOverride()) world.func_96440_m(x, y, z, block.blockID);
+
+        return true;
+    }
+
+    /**
+     * Removes a picked-up block in a single update. The tile entity goes first so the
+     * block cannot drop its contents, and clients see one block change; neighbours and
+     * comparators are notified once the tile entity is already gone.
+     */
+    public static void removeWithTile(World world, int x, int y, int z)
+    {
+        int blockId = world.getBlockId(x, y, z);
+        Block block = Block.blocksList[blockId];
+
+        world.removeBlockTileEntity(x, y, z);
+
+        if (!world.setBlock(x, y, z, 0, 0, 2)) return;
+
+        world.notifyBlockChange(x, y, z, blockId);
+
+        if (block != null && block.hasComparatorInputOverride()) world.func_96440_m(x, y, z, blockId);
+    }
+
     public static void clearTileData(ItemStack stack)
     {
         if (stack != null && stack.stackTagCompound != null)
         {
             stack.stackTagCompound.removeTag(TILE_DATA_KEY);
+            stack.stackTagCompound.removeTag(CarryOnData.TOKEN_KEY);
+            stack.stackTagCompound.removeTag(CarryOnData.HEADER_KEY);
             stack.stackTagCompound.removeTag("blockId");
             stack.stackTagCompound.removeTag("blockMeta");
             stack.stackTagCompound.removeTag(CarryOnData.NO_DROP_KEY);
+            stack.stackTagCompound.removeTag(CarryOnData.PAYLOAD_SIZE_KEY);
         }
     }
 
-    public static NBTTagCompound getTileData(ItemStack stack)
+    /** Server only: returns the carried tile NBT from the holder's vault, or from the stack for stacks that predate the vault. */
+    public static NBTTagCompound getTileData(ItemStack stack, EntityPlayer holder)
     {
-        if (stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey(TILE_DATA_KEY))
+        if (stack == null || stack.stackTagCompound == null) return null;
+
+        if (stack.stackTagCompound.hasKey(CarryOnData.TOKEN_KEY))
+            return PayloadVault.get(stack.stackTagCompound.getLong(CarryOnData.TOKEN_KEY), holder);
+
+        if (stack.stackTagCompound.hasKey(TILE_DATA_KEY))
             return stack.stackTagCompound.getCompoundTag(TILE_DATA_KEY);
 
         return null;
     }
 
+    public static long getToken(ItemStack stack)
+    {
+        if (stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey(CarryOnData.TOKEN_KEY))
+            return stack.stackTagCompound.getLong(CarryOnData.TOKEN_KEY);
+
+        return 0L;
+    }
+
     public static Block getBlock(ItemStack stack)
     {
+        byte[] header = getHeader(stack);
+
+        if (header != null) return Block.blocksList[PayloadCodec.blockId(header)];
+
         if (stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey("blockId"))
             return Block.blocksList[stack.stackTagCompound.getInteger("blockId")];
 
@@ -156,31 +297,62 @@ public class ItemTile extends Item {
 
     public static int getMeta(ItemStack stack)
     {
+        byte[] header = getHeader(stack);
+
+        if (header != null) return PayloadCodec.meta(header);
+
         if (stack != null && stack.stackTagCompound != null && stack.stackTagCompound.hasKey("blockMeta"))
             return stack.stackTagCompound.getInteger("blockMeta");
 
         return 0;
     }
 
-    public static boolean isLocked(int x, int y, int z, World world)
+    /** Returns the tile header of a carry stack, or null for stacks that store block id and meta as plain tags. */
+    private static byte[] getHeader(ItemStack stack)
     {
-        TileEntity te = world.getBlockTileEntity(x, y, z);
+        if (stack == null || stack.stackTagCompound == null || !stack.stackTagCompound.hasKey(CarryOnData.HEADER_KEY)) return null;
+
+        byte[] header = stack.stackTagCompound.getByteArray(CarryOnData.HEADER_KEY);
+
+        return PayloadCodec.kind(header) == PayloadCodec.KIND_TILE ? header : null;
+    }
+
+    public static NBTTagCompound captureTileData(TileEntity tile)
+    {
+        NBTTagCompound tileNbt = new NBTTagCompound();
 
-        if (te == null) return false;
+        if (tile != null) tile.writeToNBT(tileNbt);
 
-        NBTTagCompound tag = new NBTTagCompound();
+        return tileNbt;
+    }
 
-        te.writeToNBT(tag);
+    /**
+     * Returns true if the tile's class is known to never write a {@code Lock} tag,
+     * so its lock state can be decided without serializing it. Only unknown (modded)
+     * tile entity classes need the NBT fallback.
+     */
+    public static boolean isLockless(TileEntity te)
+    {
+        return te == null || LOCKLESS.get(te.getClass());
+    }
 
-        return tag.hasKey("Lock") && !tag.getString("Lock").isEmpty();
+    public static boolean isLocked(NBTTagCompound tileNbt)
+    {
+        return tileNbt != null && tileNbt.hasKey("Lock") && !tileNbt.getString("Lock").isEmpty();
     }
 
-    private int potionLevel(ItemStack stack)
+    public static boolean isLocked(int x, int y, int z, World world)
     {
-        NBTTagCompound tileData = getTileData(stack);
+        TileEntity te = world.getBlockTileEntity(x, y, z);
 
-        if (tileData == null) return 1;
+        if (isLockless(te)) return false;
 
-        return Math.max(1, Math.min(4, tileData.toString().length() / 500));
+        return isLocked(captureTileData(te));
+    }
+
+    /** Slowness amplifier for carrying this stack, scaled by the recorded payload size. */
+    public static int potionLevel(ItemStack stack)
+    {
+        return Math.max(1, Math.min(4, PayloadWeight.get(stack, TILE_DATA_KEY) / 500));
     }
 }
\ No newline at end of file
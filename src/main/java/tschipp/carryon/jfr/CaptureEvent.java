@@ -0,0 +1,13 @@
+package tschipp.carryon.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("carryon.Capture")
+@Label("Carry Payload Capture")
+@Description("Serializing, measuring and depositing a tile entity or entity payload")
+@Threshold("2 ms")
+public class CaptureEvent extends CarryEvent {
+}
@@ -0,0 +1,62 @@
+package tschipp.carryon.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import net.minecraft.*;
+
+/**
+ * Common fields of the CarryOn flight recorder events.
+ *
+ * Events are created with {@code begin()} where the operation starts and finished with
+ * one of the {@code commit} overloads. Those return straight away unless JFR is recording
+ * the event and its duration passed the threshold, so the type name is only looked up
+ * for events that are actually written. With no recording running, the begin/commit
+ * pair is empty and the event object does not escape.
+ */
+@Category("CarryOn")
+@StackTrace(false)
+public abstract class CarryEvent extends Event {
+
+    @Label("Type")
+    public String type;
+
+    @Label("Payload Size")
+    @DataAmount
+    public int payloadBytes;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Z")
+    public int z;
+
+    public void commit(Block block, int bytes, int x, int y, int z)
+    {
+        if (!shouldCommit()) return;
+
+        this.type = block == null ? null : block.getUnlocalizedName();
+        this.payloadBytes = bytes;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        commit();
+    }
+
+    public void commit(Entity entity, int bytes)
+    {
+        if (!shouldCommit()) return;
+
+        this.type = EntityList.getEntityString(entity);
+        this.payloadBytes = bytes;
+        this.x = MathHelper.floor_double(entity.posX);
+        this.y = MathHelper.floor_double(entity.posY);
+        this.z = MathHelper.floor_double(entity.posZ);
+        commit();
+    }
+}
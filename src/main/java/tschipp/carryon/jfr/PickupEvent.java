@@ -0,0 +1,13 @@
+package tschipp.carryon.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("carryon.Pickup")
+@Label("Carry Pickup")
+@Description("Server handling of a pickup, from the right-click packet to the carry item in hand")
+@Threshold("5 ms")
+public class PickupEvent extends CarryEvent {
+}
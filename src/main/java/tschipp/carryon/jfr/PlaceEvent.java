@@ -0,0 +1,13 @@
+package tschipp.carryon.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("carryon.Place")
+@Label("Carry Place")
+@Description("Server placement of a carried block or entity, including restoring its payload")
+@Threshold("5 ms")
+public class PlaceEvent extends CarryEvent {
+}
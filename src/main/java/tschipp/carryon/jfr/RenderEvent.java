@@ -0,0 +1,25 @@
+package tschipp.carryon.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/** Client render of a carried block or entity; coordinates are the carrier's and the payload size is unknown (0). */
+@Name("carryon.Render")
+@Label("Carry Render")
+@Description("Client rendering of carried blocks and entities")
+@Threshold("1 ms")
+public class RenderEvent extends CarryEvent {
+
+    @Label("Detail")
+    @Description("0 = full, 1 = box, see CarryRenderLod")
+    public int detail;
+
+    @Label("First Person")
+    public boolean firstPerson;
+
+    @Label("Carriers")
+    @Description("Carried blocks drawn by this event; more than one for a batch flush")
+    public int carriers = 1;
+}
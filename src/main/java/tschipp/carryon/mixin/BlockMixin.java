@@ -7,6 +7,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import tschipp.carryon.CarryOnEvents;
 import tschipp.carryon.PickupHandler;
+import tschipp.carryon.client.CarryPrediction;
 
 @Mixin(Block.class)
 public class BlockMixin {
@@ -27,6 +28,7 @@ public class BlockMixin {
 
         if (player.isSneaking() && held == null && PickupHandler.isFunctionalBlock((Block)(Object) this))
         {
+            CarryPrediction.pickUpBlock(player, world, x, y, z, (Block)(Object) this);
             info.setReturnValue(false);
             info.cancel();
         }
@@ -0,0 +1,16 @@
+package tschipp.carryon.mixin;
+
+import net.minecraft.TileEntityBrewingStand;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+@Mixin(TileEntityBrewingStand.class)
+public interface BrewingStandAccessor {
+
+    @Accessor("brewTime")
+    void carryon$setBrewTime(int brewTime);
+
+    @Invoker("canBrew")
+    boolean carryon$canBrew();
+}
@@ -0,0 +1,46 @@
+package tschipp.carryon.mixin;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import tschipp.carryon.CarrySlowdown;
+import tschipp.carryon.CarryState;
+import tschipp.carryon.CarrySync;
+
+/**
+ * Keeps carry stacks out of the equipment updates sent to observers and follows a
+ * change to or from a carry stack with a carry-state packet; see {@link CarrySync}.
+ * Also adds the carry slowdown to the speed modifier; see {@link CarrySlowdown}.
+ */
+@Mixin(EntityLivingBase.class)
+public abstract class EntityLivingBaseMixin {
+
+    @Shadow @Final private ItemStack[] previousEquipment;
+
+    @Redirect(method = "onUpdate", at = @At(value = "INVOKE", target = "Lnet/minecraft/EntityTracker;sendPacketToAllPlayersTrackingEntity(Lnet/minecraft/Entity;Lnet/minecraft/Packet;)V"))
+    private void onSendEquipment(EntityTracker tracker, Entity entity, Packet packet)
+    {
+        tracker.sendPacketToAllPlayersTrackingEntity(entity, CarrySync.forObservers(packet));
+
+        if (entity instanceof EntityPlayer player && packet instanceof Packet5PlayerInventory inventory && inventory.slot == 0
+                && (CarrySync.isCarryStack(previousEquipment[0]) || CarrySync.isCarryStack(inventory.getItemSlot())))
+        {
+            tracker.sendPacketToAllPlayersTrackingEntity(entity, CarrySync.createPacket(player));
+        }
+    }
+
+    @Inject(method = "getSpeedBoostVsSlowDown", at = @At("RETURN"), cancellable = true)
+    private void carryon$addCarrySlowdown(CallbackInfoReturnable<Float> info)
+    {
+        if (!((Object) this instanceof EntityPlayer player)) return;
+
+        int level = CarryState.of(player).slowdown();
+
+        if (level > 0) info.setReturnValue(CarrySlowdown.adjust(info.getReturnValue(), level, player.getResistanceToParalysis()));
+    }
+}
@@ -6,6 +6,7 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import tschipp.carryon.PickupHandler;
+import tschipp.carryon.client.CarryPrediction;
 
 @Mixin({EntityAnimal.class, EntityVillager.class})
 public abstract class EntityMixin {
@@ -23,6 +24,7 @@ public abstract class EntityMixin {
 
         if (!PickupHandler.canPlayerPickUpEntity(player, entity)) return;
 
+        CarryPrediction.pickUpEntity(player, entity);
         info.setReturnValue(true);
         info.cancel();
     }
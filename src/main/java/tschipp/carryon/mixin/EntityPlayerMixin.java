@@ -8,17 +8,40 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import tschipp.carryon.CarryOnData;
+import tschipp.carryon.CarryRegistry;
+import tschipp.carryon.CarryRestore;
+import tschipp.carryon.CarrySlowdown;
+import tschipp.carryon.CarryState;
+import tschipp.carryon.PayloadVault;
 import tschipp.carryon.interfaces.ICarryOnData;
+import tschipp.carryon.interfaces.ICarryState;
 
 @Mixin(EntityPlayer.class)
-public abstract class EntityPlayerMixin implements ICarryOnData {
+public abstract class EntityPlayerMixin implements ICarryOnData, ICarryState {
 
     @Unique private NBTTagCompound carryon_data = new NBTTagCompound();
+    @Unique private final CarryState carryon$state = new CarryState();
 
     @Inject(method = "readEntityFromNBT", at = @At("RETURN"))
     public void onReadFromNBT(NBTTagCompound compound, CallbackInfo info)
     {
         carryon_data = compound.hasKey("CarryOnData") ? compound.getCompoundTag("CarryOnData") : new NBTTagCompound();
+        CarrySlowdown.clearModifier((EntityPlayer)(Object) this);
+
+        if ((Object) this instanceof ServerPlayer player)
+        {
+            PayloadVault.load(player);
+            PayloadVault.release(player);
+            CarryRegistry.resume(player);
+        }
+    }
+
+    /** Carries the vault, and a carry still waiting to be restored, over to the new player entity on respawn and dimension change. */
+    @Inject(method = "clonePlayer", at = @At("RETURN"))
+    public void onClonePlayer(EntityPlayer old, boolean keepEverything, CallbackInfo info)
+    {
+        carryon_data = ((ICarryOnData) old).carryOn$getCarryOnData();
+        CarryRestore.handBack(old, (EntityPlayer)(Object) this, keepEverything);
     }
 
     @Inject(method = "writeEntityToNBT", at = @At("RETURN"))
@@ -27,6 +50,18 @@ public abstract class EntityPlayerMixin implements ICarryOnData {
         if (carryon_data != null && !carryon_data.hasNoTags()) compound.setCompoundTag("CarryOnData", carryon_data);
     }
 
+    /**
+     * Refreshes the player's {@link CarryState} on both sides. It only re-classifies the
+     * held stack, and recomputes the slowdown level, when the stack or game mode changed.
+     */
+    @Inject(method = "onUpdate", at = @At("HEAD"))
+    public void carryon$updateCarry(CallbackInfo info)
+    {
+        EntityPlayer self = (EntityPlayer)(Object) this;
+
+        carryon$state.update(self.getHeldItemStack(), self.inCreativeMode());
+    }
+
     /** Blocks dropping the held item on the server if it carries the no-drop NBT tag. */
     @Inject(method = "dropOneItem", at = @At("HEAD"), cancellable = true)
     public void carryon$blockDrop(boolean dropAll, CallbackInfoReturnable<EntityItem> info)
@@ -54,4 +89,10 @@ public abstract class EntityPlayerMixin implements ICarryOnData {
     {
         carryon_data = tag;
     }
+
+    @Override
+    public CarryState carryOn$getCarryState()
+    {
+        return carryon$state;
+    }
 }
\ No newline at end of file
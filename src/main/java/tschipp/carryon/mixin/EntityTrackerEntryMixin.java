@@ -0,0 +1,29 @@
+package tschipp.carryon.mixin;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import tschipp.carryon.CarrySync;
+
+/**
+ * Sends a player that starts tracking a carrier the bare carry item and the carry
+ * state instead of the carry stack; see {@link CarrySync}.
+ */
+@Mixin(EntityTrackerEntry.class)
+public abstract class EntityTrackerEntryMixin {
+
+    @Shadow public Entity myEntity;
+
+    @Redirect(method = "tryStartWachingThis", at = @At(value = "INVOKE", target = "Lnet/minecraft/NetServerHandler;sendPacketToPlayer(Lnet/minecraft/Packet;)V"))
+    private void onSendToWatcher(NetServerHandler handler, Packet packet)
+    {
+        Packet rewritten = CarrySync.forObservers(packet);
+
+        handler.sendPacketToPlayer(rewritten);
+
+        if (rewritten != packet && myEntity instanceof EntityPlayer player && ((Packet5PlayerInventory) packet).slot == 0)
+            handler.sendPacketToPlayer(CarrySync.createPacket(player));
+    }
+}
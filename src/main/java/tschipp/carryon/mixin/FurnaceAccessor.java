@@ -0,0 +1,12 @@
+package tschipp.carryon.mixin;
+
+import net.minecraft.TileEntityFurnace;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+@Mixin(TileEntityFurnace.class)
+public interface FurnaceAccessor {
+
+    @Invoker("canSmelt")
+    boolean carryon$canSmelt(int heatLevel);
+}
@@ -0,0 +1,42 @@
+package tschipp.carryon.mixin;
+
+import net.minecraft.server.MinecraftServer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.CarryOnServer;
+
+@Mixin(MinecraftServer.class)
+public abstract class MinecraftServerMixin {
+
+    @Inject(method = "tick", at = @At("HEAD"))
+    private void carryon$onTickStart(CallbackInfo info)
+    {
+        CarryOnServer.onServerTickStart((MinecraftServer)(Object) this);
+    }
+
+    @Inject(method = "tick", at = @At("RETURN"))
+    private void carryon$onTick(CallbackInfo info)
+    {
+        CarryOnServer.onServerTick((MinecraftServer)(Object) this);
+    }
+
+    @Inject(method = "saveAllWorlds", at = @At("RETURN"))
+    private void carryon$onWorldsSaved(boolean quiet, boolean waitUntilFinished, CallbackInfo info)
+    {
+        CarryOnServer.onWorldsSaved((MinecraftServer)(Object) this);
+    }
+
+    @Inject(method = "stopServer", at = @At(value = "INVOKE", target = "Lnet/minecraft/server/MinecraftServer;saveAllWorlds(ZZ)V"))
+    private void carryon$onStopping(CallbackInfo info)
+    {
+        CarryOnServer.onServerStopping((MinecraftServer)(Object) this);
+    }
+
+    @Inject(method = "stopServer", at = @At("RETURN"))
+    private void carryon$onStop(CallbackInfo info)
+    {
+        CarryOnServer.onServerStop((MinecraftServer)(Object) this);
+    }
+}
@@ -7,24 +7,24 @@ import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.CarryMetrics;
 import tschipp.carryon.CarryOnEvents;
+import tschipp.carryon.CarryOnServer;
+import tschipp.carryon.CarryRegistry;
+import tschipp.carryon.CarrySync;
 import tschipp.carryon.PickupHandler;
+import tschipp.carryon.PayloadWeight;
+import tschipp.carryon.PickupRaycast;
+import tschipp.carryon.RateLimiter;
 import tschipp.carryon.items.ItemEntity;
 import tschipp.carryon.items.ItemTile;
-
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Supplier;
+import tschipp.carryon.jfr.PickupEvent;
 
 @Mixin(NetServerHandler.class)
 public class NetServerHandlerMixin {
 
     @Shadow public ServerPlayer playerEntity;
 
-    @Unique private static final Map<Integer, Long> pickupCooldown = new HashMap<>();
-
-    @Unique private static final long COOLDOWN_MS = 500L;
-
     @Inject(method = "handleRightClick", at = @At("HEAD"), cancellable = true)
     private void carryon$handleRightClick(Packet81RightClick packet, CallbackInfo ci)
     {
@@ -36,6 +36,11 @@ public class NetServerHandlerMixin {
 
         if (world == null) return;
 
+        long start = CarryMetrics.start();
+
+        PickupEvent event = new PickupEvent();
+        event.begin();
+
         ItemStack held = player.getHeldItemStack();
 
         if (held != null && (held.getItem() == CarryOnEvents.TILE_ITEM || held.getItem() == CarryOnEvents.ENTITY_ITEM))
@@ -49,28 +54,47 @@ public class NetServerHandlerMixin {
         {
             Entity entity = world.getEntityByID(packet.entity_id);
 
-            if (entity != null && !entity.isDead && PickupHandler.canPlayerPickUpEntity(player, entity)
-
-                    && checkCooldown(player.entityId))
+            if (entity != null && !entity.isDead && PickupHandler.canPlayerPickUpEntity(player, entity))
             {
                 ItemStack stack = new ItemStack(CarryOnEvents.ENTITY_ITEM);
 
-                if (ItemEntity.storeEntityData(entity, world, stack))
+                if (checkCooldown(player) && ItemEntity.storeEntityData(entity, world, stack, player))
                 {
                     entity.setDead();
                     player.setHeldItemStack(stack);
+                    CarryRegistry.begin(player, stack, world, entity.getBlockPosX(), entity.getBlockPosY(), entity.getBlockPosZ());
+                    CarryMetrics.pickedUp(start);
+                    event.commit(entity, PayloadWeight.get(stack, ItemEntity.ENTITY_DATA_KEY));
                     ci.cancel();
                 }
+                else
+                {
+                    // The client predicted this pickup
+                    CarrySync.rollback(player);
+                }
+            }
+            else
+            {
+                CarrySync.rollback(player);
             }
             return;
         }
 
-        if (!packet.requiresRaycasting()) return;
+        // A sneaking click with an empty hand may have been predicted as a pickup; every refusal below is rolled back
+        if (!packet.requiresRaycasting())
+        {
+            CarrySync.rollback(player);
+            return;
+        }
 
-        // Temporarily apply packet position for server-side raycast
-        RaycastCollision rc = withPacketPos(player, packet, () -> player.getSelectedObject(packet.partial_tick, false, false, null));
+        // Replay the client's raycast from the packet's eye position without touching the player
+        RaycastCollision rc = PickupRaycast.select(player, packet);
 
-        if (rc == null) return;
+        if (rc == null)
+        {
+            CarrySync.rollback(player);
+            return;
+        }
 
         if (rc.isBlock()) {
 
@@ -78,92 +102,93 @@ public class NetServerHandlerMixin {
 
             int x = rc.block_hit_x, y = rc.block_hit_y, z = rc.block_hit_z;
 
-            if (block == null || !PickupHandler.isFunctionalBlock(block)) return;
+            if (block == null || !PickupHandler.isFunctionalBlock(block))
+            {
+                CarrySync.rollback(player, x, y, z);
+                return;
+            }
+
+            if (block.getBlockHardness(world.getBlockMetadata(x, y, z)) < 0)
+            {
+                CarrySync.rollback(player, x, y, z);
+                return;
+            }
 
-            if (block.getBlockHardness(world.getBlockMetadata(x, y, z)) < 0) return;
+            TileEntity te = world.getBlockTileEntity(x, y, z);
 
-            if (ItemTile.isLocked(x, y, z, world)) return;
+            // Unknown tile types are serialized once here and the capture is reused by storeTileData
+            NBTTagCompound captured = ItemTile.isLockless(te) ? null : ItemTile.captureTileData(te);
 
-            if (!checkCooldown(player.entityId)) {
+            if (ItemTile.isLocked(captured))
+            {
+                CarryMetrics.rejectLocked(player);
+                CarrySync.rollback(player, x, y, z);
+                return;
+            }
+
+            if (!checkCooldown(player)) {
+                CarrySync.rollback(player, x, y, z);
                 ci.cancel(); return;
             }
 
             ItemStack stack = new ItemStack(CarryOnEvents.TILE_ITEM);
 
-            if (ItemTile.storeTileData(world.getBlockTileEntity(x, y, z), world, x, y, z, stack))
+            if (ItemTile.storeTileData(te, captured, world, x, y, z, stack, player))
             {
-                world.removeBlockTileEntity(x, y, z);
-                world.setBlockToAir(x, y, z);
+                ItemTile.removeWithTile(world, x, y, z);
 
                 player.setHeldItemStack(stack);
+                CarryRegistry.begin(player, stack, world, x, y, z);
+                CarryMetrics.pickedUp(start);
+                event.commit(block, PayloadWeight.get(stack, ItemTile.TILE_DATA_KEY), x, y, z);
                 ci.cancel();
             }
+            else
+            {
+                CarrySync.rollback(player, x, y, z);
+            }
         }
         else if (rc.isEntity())
         {
             Entity entity = rc.getEntityHit();
 
-            if (entity == null || entity.isDead) return;
-
-            if (!PickupHandler.canPlayerPickUpEntity(player, entity)) return;
+            if (entity == null || entity.isDead || !PickupHandler.canPlayerPickUpEntity(player, entity))
+            {
+                CarrySync.rollback(player);
+                return;
+            }
 
-            if (!checkCooldown(player.entityId))
+            if (!checkCooldown(player))
             {
+                CarrySync.rollback(player);
                 ci.cancel(); return;
             }
 
             ItemStack stack = new ItemStack(CarryOnEvents.ENTITY_ITEM);
 
-            if (ItemEntity.storeEntityData(entity, world, stack))
+            if (ItemEntity.storeEntityData(entity, world, stack, player))
             {
                 entity.setDead();
                 player.setHeldItemStack(stack);
+                CarryRegistry.begin(player, stack, world, entity.getBlockPosX(), entity.getBlockPosY(), entity.getBlockPosZ());
+                CarryMetrics.pickedUp(start);
+                event.commit(entity, PayloadWeight.get(stack, ItemEntity.ENTITY_DATA_KEY));
                 ci.cancel();
             }
+            else
+            {
+                CarrySync.rollback(player);
+            }
         }
     }
 
-    /** Returns true and records timestamp if outside cooldown window; false if still cooling down. */
+    /** Returns true and takes a pickup token if the player is outside the cooldown window; false if still cooling down. */
     @Unique
-    private static boolean checkCooldown(int playerId)
+    private static boolean checkCooldown(ServerPlayer player)
     {
-        long now = System.currentTimeMillis();
-        Long last = pickupCooldown.get(playerId);
-
-        if (last != null && now - last < COOLDOWN_MS)
-            return false;
+        if (RateLimiter.PICKUP.tryAcquire(player.entityId, CarryOnServer.currentTick())) return true;
 
-        pickupCooldown.put(playerId, now);
-        return true;
-    }
-
-    /** Temporarily applies packet position/rotation to the player for a server-side raycast. */
-    @Unique
-    private static RaycastCollision withPacketPos(ServerPlayer player, Packet81RightClick pkt, Supplier<RaycastCollision> fn)
-    {
-        double ox = player.posX, oy = player.posY, oz = player.posZ;
-        float oyaw = player.rotationYaw, opitch = player.rotationPitch;
-        double opx = player.prevPosX, opy = player.prevPosY, opz = player.prevPosZ;
-        float opyaw = player.prevRotationYaw, oppitch = player.prevRotationPitch;
-        float oySize = player.ySize;
-        AxisAlignedBB obb = player.boundingBox.copy();
-
-        player.posX = pkt.pos_x; player.posY = pkt.pos_y; player.posZ = pkt.pos_z;
-        player.rotationYaw = pkt.rotation_yaw; player.rotationPitch = pkt.rotation_pitch;
-        player.prevPosX = pkt.prev_pos_x; player.prevPosY = pkt.prev_pos_y; player.prevPosZ = pkt.prev_pos_z;
-        player.prevRotationYaw = pkt.prev_rotation_yaw; player.prevRotationPitch = pkt.prev_rotation_pitch;
-        player.ySize = pkt.y_size;
-        player.boundingBox.setBB(pkt.bb);
-
-        RaycastCollision rc = fn.get();
-
-        player.posX = ox; player.posY = oy; player.posZ = oz;
-        player.rotationYaw = oyaw; player.rotationPitch = opitch;
-        player.prevPosX = opx; player.prevPosY = opy; player.prevPosZ = opz;
-        player.prevRotationYaw = opyaw; player.prevRotationPitch = oppitch;
-        player.ySize = oySize;
-        player.boundingBox.setBB(obb);
-
-        return rc;
+        CarryMetrics.rejectCooldown(player);
+        return false;
     }
-}
\ No newline at end of file
+}
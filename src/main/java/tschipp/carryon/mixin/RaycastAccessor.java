@@ -0,0 +1,27 @@
+package tschipp.carryon.mixin;
+
+import net.minecraft.Raycast;
+import net.minecraft.RaycastCollision;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import java.util.List;
+
+@Mixin(Raycast.class)
+public interface RaycastAccessor {
+
+    @Accessor("has_produced_collisions")
+    void carryon$setHasProducedCollisions(boolean value);
+
+    @Accessor("has_been_performed_vs_blocks")
+    void carryon$setPerformedVsBlocks(boolean value);
+
+    @Accessor("has_been_performed_vs_entities")
+    void carryon$setPerformedVsEntities(boolean value);
+
+    @Accessor("block_collision")
+    void carryon$setBlockCollision(RaycastCollision collision);
+
+    @Accessor("entity_collisions")
+    void carryon$setEntityCollisions(List collisions);
+}
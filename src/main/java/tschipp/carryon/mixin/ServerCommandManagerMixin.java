@@ -0,0 +1,18 @@
+package tschipp.carryon.mixin;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.CommandCarryOn;
+
+@Mixin(ServerCommandManager.class)
+public abstract class ServerCommandManagerMixin {
+
+    @Inject(method = "<init>", at = @At("RETURN"))
+    private void carryon$registerCommands(CallbackInfo info)
+    {
+        ((CommandHandler)(Object) this).registerCommand(new CommandCarryOn());
+    }
+}
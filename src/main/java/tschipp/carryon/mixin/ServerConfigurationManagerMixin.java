@@ -0,0 +1,39 @@
+package tschipp.carryon.mixin;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import tschipp.carryon.CarryJournal;
+import tschipp.carryon.CarryOnServer;
+import tschipp.carryon.PayloadVault;
+
+@Mixin(ServerConfigurationManager.class)
+public abstract class ServerConfigurationManagerMixin {
+
+    @Inject(method = "playerLoggedOut", at = @At("HEAD"))
+    private void carryon$onLoggedOut(ServerPlayer player, CallbackInfo info)
+    {
+        CarryOnServer.onPlayerLogout(player);
+    }
+
+    @Inject(method = "respawnPlayer", at = @At("HEAD"))
+    private void carryon$onRespawn(ServerPlayer player, int dimension, boolean keepInventory, CallbackInfoReturnable<ServerPlayer> info)
+    {
+        CarryOnServer.onPlayerRespawn(player);
+    }
+
+    @Inject(method = "writePlayerData", at = @At("HEAD"))
+    private void carryon$onPlayerSaving(ServerPlayer player, CallbackInfo info)
+    {
+        PayloadVault.release(player);
+    }
+
+    @Inject(method = "writePlayerData", at = @At("RETURN"))
+    private void carryon$onPlayerSaved(ServerPlayer player, CallbackInfo info)
+    {
+        CarryJournal.saved(player);
+    }
+}
@@ -0,0 +1,18 @@
+package tschipp.carryon.mixin;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.CarryOnServer;
+
+@Mixin(ServerPlayer.class)
+public abstract class ServerPlayerMixin {
+
+    @Inject(method = "onDeath", at = @At("HEAD"))
+    private void carryon$onDeath(DamageSource source, CallbackInfo info)
+    {
+        CarryOnServer.onPlayerDeath((ServerPlayer)(Object) this);
+    }
+}
@@ -0,0 +1,18 @@
+package tschipp.carryon.mixin.client;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.client.CarryPrediction;
+
+@Mixin(EntityClientPlayerMP.class)
+public abstract class ClientPlayerMixin {
+
+    @Inject(method = "onUpdate", at = @At("HEAD"))
+    private void carryon$onUpdate(CallbackInfo info)
+    {
+        CarryPrediction.tick((EntityPlayer)(Object) this);
+    }
+}
@@ -0,0 +1,18 @@
+package tschipp.carryon.mixin.client;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.client.render.CarryRenderLod;
+
+@Mixin(EntityRenderer.class)
+public abstract class EntityRendererMixin {
+
+    @Inject(method = "renderWorld", at = @At("HEAD"))
+    private void onRenderWorld(float partialTick, long finishTime, CallbackInfo info)
+    {
+        CarryRenderLod.beginFrame();
+    }
+}
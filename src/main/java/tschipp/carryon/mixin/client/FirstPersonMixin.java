@@ -5,7 +5,7 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
-import tschipp.carryon.CarryOnEvents;
+import tschipp.carryon.CarryState;
 import tschipp.carryon.client.render.BlockRendererLayer;
 import tschipp.carryon.client.render.EntityRendererLayer;
 
@@ -18,18 +18,17 @@ public class FirstPersonMixin {
         Minecraft mc = Minecraft.getMinecraft();
         if (mc == null || mc.thePlayer == null) return;
 
-        ItemStack stack = mc.thePlayer.getHeldItemStack();
-        if (stack == null) return;
+        CarryState state = CarryState.of(mc.thePlayer);
 
-        if (stack.getItem() == CarryOnEvents.TILE_ITEM)
+        if (state.kind() == CarryState.BLOCK)
         {
             info.cancel();
-            BlockRendererLayer.renderFirstPerson(mc.thePlayer, stack, partialTicks);
+            BlockRendererLayer.renderFirstPerson(mc.thePlayer, state.stack(), partialTicks);
         }
-        else if (stack.getItem() == CarryOnEvents.ENTITY_ITEM)
+        else if (state.kind() == CarryState.ENTITY)
         {
             info.cancel();
-            EntityRendererLayer.renderFirstPerson(mc.thePlayer, stack, partialTicks);
+            EntityRendererLayer.renderFirstPerson(mc.thePlayer, state.stack(), partialTicks);
         }
     }
 
@@ -5,7 +5,7 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
-import tschipp.carryon.CarryOnEvents;
+import tschipp.carryon.CarryState;
 
 /**
  * Injects into ItemRenderer.renderItem to completely suppress the default
@@ -28,8 +28,7 @@ public class ItemIconOverrideMixin {
         // Block: rendered as a full 3D block by BlockRendererLayer.renderThirdPerson
         // Entity: rendered as a 3D entity by EntityRendererLayer.renderThirdPerson
         // In both cases, drawing a sprite here would cause texture pollution.
-        if (stack.getItem() == CarryOnEvents.TILE_ITEM
-                || stack.getItem() == CarryOnEvents.ENTITY_ITEM) {
+        if (CarryState.kindOf(stack) != CarryState.NONE) {
             ci.cancel();
         }
     }
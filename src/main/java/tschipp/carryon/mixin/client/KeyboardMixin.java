@@ -9,7 +9,7 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
-import tschipp.carryon.CarryOnEvents;
+import tschipp.carryon.CarryState;
 
 @Mixin(Minecraft.class)
 public abstract class KeyboardMixin {
@@ -20,11 +20,7 @@ public abstract class KeyboardMixin {
     @Unique
     private boolean carryon_isCarrying()
     {
-        if (thePlayer == null) return false;
-
-        ItemStack held = thePlayer.getHeldItemStack();
-
-        return held != null && (held.getItem() == CarryOnEvents.TILE_ITEM || held.getItem() == CarryOnEvents.ENTITY_ITEM);
+        return thePlayer != null && CarryState.of(thePlayer).isCarrying();
     }
 
     /**
@@ -0,0 +1,29 @@
+package tschipp.carryon.mixin.client;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.CarrySync;
+import tschipp.carryon.client.render.RemoteCarryState;
+
+@Mixin(NetClientHandler.class)
+public abstract class NetClientHandlerMixin {
+
+    @Inject(method = "handleCustomPayload", at = @At("HEAD"), cancellable = true)
+    private void onCustomPayload(Packet250CustomPayload packet, CallbackInfo info)
+    {
+        if (!CarrySync.CHANNEL.equals(packet.channel)) return;
+
+        RemoteCarryState.handle(packet.data);
+        info.cancel();
+    }
+
+    /** Carriers leaving tracking range are destroyed here; tracking them again resends their state. */
+    @Inject(method = "handleDestroyEntity", at = @At("HEAD"))
+    private void onDestroyEntity(Packet29DestroyEntity packet, CallbackInfo info)
+    {
+        for (int entityId : packet.entityId) RemoteCarryState.remove(entityId);
+    }
+}
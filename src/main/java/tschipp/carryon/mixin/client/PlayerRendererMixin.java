@@ -2,43 +2,23 @@ package tschipp.carryon.mixin.client;
 
 import net.minecraft.*;
 import org.spongepowered.asm.mixin.Mixin;
-import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
-import tschipp.carryon.CarryOnEvents;
+import tschipp.carryon.CarryState;
 import tschipp.carryon.client.render.BlockRendererLayer;
 import tschipp.carryon.client.render.EntityRendererLayer;
-import tschipp.carryon.client.render.ICarrying;
 
 @Mixin(RenderPlayer.class)
 public abstract class PlayerRendererMixin {
 
-    @Shadow private ModelBiped modelBipedMain;
-
     @Inject(method = "renderSpecials", at = @At("RETURN"))
     private void onRenderSpecials(AbstractClientPlayer player, float partialTick, CallbackInfo info)
     {
-        ItemStack stack  = player.getHeldItemStack();
-        ICarrying model  = (ICarrying) this.modelBipedMain;
-
-        if (stack != null && stack.getItem() == CarryOnEvents.TILE_ITEM)
-        {
-            model.carryOn$setCarryingBlock(true);
-            model.carryOn$setCarryingEntity(false);
-            BlockRendererLayer.renderThirdPerson(player, partialTick);
+        // The arm pose is read from the same state by BipedModelMixin, so the model needs no flags
+        int kind = CarryState.of(player).kind();
 
-        }
-        else if (stack != null && stack.getItem() == CarryOnEvents.ENTITY_ITEM)
-        {
-            model.carryOn$setCarryingBlock(false);
-            model.carryOn$setCarryingEntity(true);
-            EntityRendererLayer.renderThirdPerson(player, partialTick);
-        }
-        else
-        {
-            model.carryOn$setCarryingBlock(false);
-            model.carryOn$setCarryingEntity(false);
-        }
+        if (kind == CarryState.BLOCK) BlockRendererLayer.renderThirdPerson(player, partialTick);
+        else if (kind == CarryState.ENTITY) EntityRendererLayer.renderThirdPerson(player, partialTick);
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package tschipp.carryon.mixin.client;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.client.render.BlockRendererLayer;
+
+/**
+ * Brackets the world entity pass so third-person carried blocks are drawn as one batch after it.
+ */
+@Mixin(RenderGlobal.class)
+public abstract class RenderGlobalMixin {
+
+    @Inject(method = "renderEntities", at = @At("HEAD"))
+    private void onRenderEntitiesStart(Vec3 camera, ICamera frustum, float partialTick, CallbackInfo info)
+    {
+        BlockRendererLayer.beginBatch();
+    }
+
+    @Inject(method = "renderEntities", at = @At("RETURN"))
+    private void onRenderEntitiesEnd(Vec3 camera, ICamera frustum, float partialTick, CallbackInfo info)
+    {
+        BlockRendererLayer.flushBatch(partialTick);
+    }
+}
@@ -0,0 +1,19 @@
+package tschipp.carryon.mixin.client;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.client.CarryPrediction;
+
+/** Skips world entities the local player is predicted to have picked up. */
+@Mixin(RenderManager.class)
+public abstract class RenderManagerMixin {
+
+    @Inject(method = "renderEntity", at = @At("HEAD"), cancellable = true)
+    private void carryon$renderEntity(Entity entity, float partialTicks, CallbackInfo info)
+    {
+        if (CarryPrediction.isHidden(entity)) info.cancel();
+    }
+}
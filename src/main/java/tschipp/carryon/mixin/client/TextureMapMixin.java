@@ -0,0 +1,24 @@
+package tschipp.carryon.mixin.client;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.client.render.BlockMeshCache;
+
+/**
+ * Invalidates compiled carried-block geometry whenever the block atlas is rebuilt.
+ */
+@Mixin(TextureMap.class)
+public abstract class TextureMapMixin {
+
+    @Shadow public abstract int getTextureType();
+
+    @Inject(method = "loadTextureAtlas", at = @At("RETURN"))
+    private void onLoadTextureAtlas(ResourceManager manager, CallbackInfo info)
+    {
+        if (getTextureType() == 0) BlockMeshCache.invalidate();
+    }
+}
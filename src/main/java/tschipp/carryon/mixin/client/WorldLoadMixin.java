@@ -0,0 +1,25 @@
+package tschipp.carryon.mixin.client;
+
+import net.minecraft.*;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import tschipp.carryon.client.CarryPrediction;
+import tschipp.carryon.client.render.RemoteCarryState;
+import tschipp.carryon.client.render.RenderEntityCache;
+
+/**
+ * Drops client-side carry render caches whenever the client world is unloaded or replaced.
+ */
+@Mixin(Minecraft.class)
+public abstract class WorldLoadMixin {
+
+    @Inject(method = "loadWorld(Lnet/minecraft/WorldClient;Ljava/lang/String;)V", at = @At("HEAD"))
+    private void onLoadWorld(WorldClient world, String message, CallbackInfo info)
+    {
+        RenderEntityCache.clear();
+        RemoteCarryState.clear();
+        CarryPrediction.clear();
+    }
+}